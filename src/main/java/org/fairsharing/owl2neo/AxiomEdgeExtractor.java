@@ -0,0 +1,171 @@
+package org.fairsharing.owl2neo;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.search.EntitySearcher;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Walks the TBox of an ontology once and streams both the named superclass edges and the
+ * edges implied by existential restrictions (e.g. <code>part_of some X</code>) into an {@link EdgeBuffer}.
+ * Restriction edges are typed after the object property, but never with the subclass or root type.
+ * Named equivalent classes are not linked to each other (that would be a cycle) but share their named parents,
+ * as a reasoner would place them, and named classes with no parent are linked to owl:Thing.
+ */
+public class AxiomEdgeExtractor implements OWLAxiomVisitor {
+
+    public static final String RESTRICTION_SUFFIX = "Restriction";
+
+    private final OWLOntology ontology;
+    private final OWLDataFactory dataFactory;
+    private final EdgeBuffer buffer;
+    private final String subClassType;
+    private final String rootType;
+
+    private final Set<OWLClass> classesWithParents = new HashSet<OWLClass>();
+    private final Map<OWLObjectProperty, String> propertyTypes = new HashMap<OWLObjectProperty, String>();
+    private final Map<OWLClass, Set<OWLClass>> equivalents = new HashMap<OWLClass, Set<OWLClass>>();
+
+    public AxiomEdgeExtractor(OWLOntology ontology, OWLDataFactory dataFactory, EdgeBuffer buffer,
+                              String subClassType, String rootType) {
+        this.ontology = ontology;
+        this.dataFactory = dataFactory;
+        this.buffer = buffer;
+        this.subClassType = subClassType;
+        this.rootType = rootType;
+    }
+
+    public void extract() {
+        ontology.tboxAxioms(Imports.EXCLUDED).forEach(axiom -> axiom.accept(this));
+        addEquivalentParents();
+        OWLClass thing = dataFactory.getOWLThing();
+        ontology.classesInSignature()
+                .filter(c -> !c.isOWLThing() && !classesWithParents.contains(c))
+                .forEach(c -> buffer.add(new Edge(c, thing, rootType, null)));
+        buffer.flush();
+    }
+
+    @Override
+    public void visit(OWLSubClassOfAxiom axiom) {
+        if (!axiom.getSubClass().isAnonymous()) {
+            addSuperClassExpression(axiom.getSubClass().asOWLClass(), axiom.getSuperClass());
+        }
+    }
+
+    /**
+     * Anonymous definitions give edges right away; named equivalents are grouped and get each other's
+     * parents once the whole TBox has been read, see {@link #addEquivalentParents()}.
+     */
+    @Override
+    public void visit(OWLEquivalentClassesAxiom axiom) {
+        axiom.namedClasses().forEach(c -> axiom.classExpressions()
+                .filter(OWLClassExpression::isAnonymous)
+                .forEach(ce -> addSuperClassExpression(c, ce)));
+
+        Set<OWLClass> group = new HashSet<OWLClass>();
+        axiom.namedClasses().filter(c -> !c.isOWLThing()).forEach(c -> group.addAll(equivalents.getOrDefault(c, Collections.singleton(c))));
+        if (group.size() > 1) {
+            group.forEach(c -> equivalents.put(c, group));
+        }
+    }
+
+    /**
+     * Links every class of a group of named equivalents to the named parents of the other classes of the group.
+     */
+    private void addEquivalentParents() {
+        for (Set<OWLClass> group : new HashSet<Set<OWLClass>>(equivalents.values())) {
+            Map<OWLClass, Set<OWLClass>> parents = new HashMap<OWLClass, Set<OWLClass>>();
+            group.forEach(c -> parents.put(c, getNamedParents(c)));
+            for (OWLClass c : group) {
+                Set<OWLClass> added = new HashSet<OWLClass>(parents.get(c));
+                for (OWLClass equivalent : group) {
+                    for (OWLClass parent : parents.get(equivalent)) {
+                        if (!group.contains(parent) && added.add(parent)) {
+                            classesWithParents.add(c);
+                            buffer.add(new Edge(c, parent, subClassType, null));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private Set<OWLClass> getNamedParents(OWLClass c) {
+        return Stream.concat(
+                ontology.subClassAxiomsForSubClass(c).map(OWLSubClassOfAxiom::getSuperClass),
+                ontology.equivalentClassesAxioms(c).flatMap(OWLEquivalentClassesAxiom::classExpressions).filter(OWLClassExpression::isAnonymous))
+                .flatMap(OWLClassExpression::conjunctSet)
+                .filter(ce -> !ce.isAnonymous() && !ce.isOWLThing())
+                .map(OWLClassExpression::asOWLClass)
+                .collect(Collectors.toSet());
+    }
+
+    private void addSuperClassExpression(OWLClass child, OWLClassExpression superClass) {
+        if (superClass.isOWLThing()) {
+            return;
+        }
+        switch (superClass.getClassExpressionType()) {
+            case OWL_CLASS:
+                classesWithParents.add(child);
+                buffer.add(new Edge(child, superClass.asOWLClass(), subClassType, null));
+                break;
+
+            case OBJECT_SOME_VALUES_FROM:
+                OWLObjectSomeValuesFrom restriction = (OWLObjectSomeValuesFrom) superClass;
+                if (!restriction.getProperty().isAnonymous() && !restriction.getFiller().isAnonymous()) {
+                    OWLObjectProperty property = restriction.getProperty().asOWLObjectProperty();
+                    buffer.add(new Edge(child, restriction.getFiller().asOWLClass(), getPropertyType(property), property));
+                }
+                break;
+
+            case OBJECT_INTERSECTION_OF:
+                ((OWLObjectIntersectionOf) superClass).operands().forEach(operand -> addSuperClassExpression(child, operand));
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * The relationship type of a restriction edge is the camel-cased rdfs:label of its property
+     * (so "part of" becomes "partOf"), falling back to the IRI remainder when there is no label.
+     * A type equal to the subclass or root type gets the {@link #RESTRICTION_SUFFIX}, so that restriction
+     * edges never pass for hierarchy edges.
+     */
+    protected String getPropertyType(OWLObjectProperty property) {
+        return propertyTypes.computeIfAbsent(property, p -> {
+            String type;
+            Optional<OWLAnnotation> label = EntitySearcher.getAnnotations(p, ontology, dataFactory.getRDFSLabel()).findFirst();
+            if (label.isPresent() && label.get().getValue().asLiteral().isPresent()) {
+                type = toCamelCase(label.get().getValue().asLiteral().get().getLiteral());
+            }
+            else {
+                type = p.getIRI().getRemainder().orElse(p.getIRI().getIRIString());
+            }
+            if (type.equalsIgnoreCase(subClassType) || type.equalsIgnoreCase(rootType)) {
+                type += RESTRICTION_SUFFIX;
+            }
+            return type;
+        });
+    }
+
+    protected static String toCamelCase(String label) {
+        StringBuilder sb = new StringBuilder();
+        boolean upperNext = false;
+        for (char ch : label.trim().toCharArray()) {
+            if (Character.isLetterOrDigit(ch)) {
+                sb.append(upperNext ? Character.toUpperCase(ch) : ch);
+                upperNext = false;
+            }
+            else {
+                upperNext = sb.length() > 0;
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.fairsharing.owl2neo;
+
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+
+/**
+ * A directed edge between two named classes, as extracted from the ontology TBox.
+ * The property is null for plain subclass edges and set for edges derived from a restriction.
+ */
+public class Edge {
+
+    private final OWLClass child;
+    private final OWLClass parent;
+    private final String type;
+    private final OWLObjectProperty property;
+
+    public Edge(OWLClass child, OWLClass parent, String type, OWLObjectProperty property) {
+        this.child = child;
+        this.parent = parent;
+        this.type = type;
+        this.property = property;
+    }
+
+    public OWLClass getChild() {
+        return child;
+    }
+
+    public OWLClass getParent() {
+        return parent;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public OWLObjectProperty getProperty() {
+        return property;
+    }
+
+    @Override
+    public String toString() {
+        return child + " -[" + type + "]-> " + parent;
+    }
+
+}
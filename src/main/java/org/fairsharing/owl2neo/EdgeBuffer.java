@@ -0,0 +1,54 @@
+package org.fairsharing.owl2neo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Fixed-size buffer of edges that hands its content over to a sink every time it fills up,
+ * so that the whole edge set never has to be held in memory at once.
+ */
+public class EdgeBuffer {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private final int capacity;
+    private final List<Edge> edges;
+    private final Consumer<List<Edge>> sink;
+    private long total = 0;
+
+    public EdgeBuffer(Consumer<List<Edge>> sink) {
+        this(DEFAULT_CAPACITY, sink);
+    }
+
+    public EdgeBuffer(int capacity, Consumer<List<Edge>> sink) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Edge buffer capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.edges = new ArrayList<Edge>(capacity);
+        this.sink = sink;
+    }
+
+    public void add(Edge edge) {
+        edges.add(edge);
+        total++;
+        if (edges.size() >= capacity) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        if (edges.isEmpty()) {
+            return;
+        }
+        sink.accept(Collections.unmodifiableList(edges));
+        edges.clear();
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+}
@@ -0,0 +1,288 @@
+package org.fairsharing.owl2neo;
+
+import org.neo4j.graphdb.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Compact, versioned and memory-mappable snapshot of the hierarchy of one label (DISCIPLINE, DOMAIN...),
+ * so that subject trees can be served without going back to the graph.
+ * <p>
+ * Layout (big endian): magic, format version, creation time, label, node count, root indexes, one record
+ * offset per node, then the records themselves (iri, displayName, synonyms, child indexes).
+ * Strings are stored as an int length followed by UTF-8 bytes.
+ * Snapshots are written to a temporary file and moved in place atomically, so readers only have to re-open the file.
+ */
+public class HierarchySnapshot {
+
+    public static final int MAGIC = 0x4F324E53; // "O2NS"
+    public static final int FORMAT_VERSION = 1;
+    public static final String FILE_EXTENSION = ".snapshot";
+
+    private static final String TMP_EXTENSION = ".tmp";
+    private static final String STAGING_PREFIX = ".staging-";
+    private static final RelationshipType PARENT_TYPE = RelationshipType.withName(Owl2Neo4jLoader.PART_OF);
+
+    private final MappedByteBuffer buffer;
+    private final String label;
+    private final long createdAt;
+    private final int size;
+    private final int[] roots;
+    private final int offsetTablePosition;
+    private Map<String, Integer> iriIndex;
+
+    private HierarchySnapshot(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a hierarchy snapshot");
+        }
+        int version = buffer.getInt(4);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported hierarchy snapshot version: " + version);
+        }
+        createdAt = buffer.getLong(8);
+        int position = 16;
+        label = readString(buffer, position);
+        position += 4 + buffer.getInt(position);
+        size = buffer.getInt(position);
+        position += 4;
+        roots = readInts(buffer, position);
+        offsetTablePosition = position + 4 + 4 * roots.length;
+    }
+
+    public static File getSnapshotFile(File directory, String label) {
+        return new File(directory, label + FILE_EXTENSION);
+    }
+
+    public static HierarchySnapshot open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Hierarchy snapshot too large to be mapped: " + file);
+            }
+            return new HierarchySnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes the snapshot of all the nodes carrying the given label into <code>directory</code>.
+     * Children are the nodes with the same label linked to a node through a partOf relationship,
+     * roots the ones without such a parent. Must be called inside a transaction.
+     */
+    public static File export(GraphDatabaseService graphDb, String label, File directory) throws IOException {
+        Label nodeLabel = Label.label(label);
+        List<Node> nodes = new ArrayList<Node>();
+        Map<Long, Integer> indexes = new HashMap<Long, Integer>();
+        graphDb.findNodes(nodeLabel).forEachRemaining(node -> {
+            indexes.put(node.getId(), nodes.size());
+            nodes.add(node);
+        });
+
+        List<Integer> roots = new ArrayList<Integer>();
+        for (int i = 0; i < nodes.size(); i++) {
+            boolean hasParent = false;
+            for (Relationship relationship : nodes.get(i).getRelationships(Direction.OUTGOING, PARENT_TYPE)) {
+                if (relationship.getEndNode().hasLabel(nodeLabel)) {
+                    hasParent = true;
+                    break;
+                }
+            }
+            if (!hasParent) {
+                roots.add(i);
+            }
+        }
+
+        Files.createDirectories(directory.toPath());
+        File file = getSnapshotFile(directory, label);
+        File tmpFile = new File(directory, file.getName() + TMP_EXTENSION);
+        try (FileOutputStream fos = new FileOutputStream(tmpFile)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            writeString(out, label);
+            out.writeInt(nodes.size());
+            out.writeInt(roots.size());
+            for (int root : roots) {
+                out.writeInt(root);
+            }
+            int offsetTablePosition = out.size();
+            out.write(new byte[8 * nodes.size()]);
+
+            long[] offsets = new long[nodes.size()];
+            for (int i = 0; i < nodes.size(); i++) {
+                Node node = nodes.get(i);
+                offsets[i] = out.size();
+                writeString(out, (String) node.getProperty("iri", ""));
+                writeString(out, (String) node.getProperty("displayName", node.getProperty("name", "")));
+                String[] synonyms = (String[]) node.getProperty("synonyms", new String[0]);
+                out.writeInt(synonyms.length);
+                for (String synonym : synonyms) {
+                    writeString(out, synonym);
+                }
+                List<Integer> children = new ArrayList<Integer>();
+                for (Relationship relationship : node.getRelationships(Direction.INCOMING, PARENT_TYPE)) {
+                    Integer child = indexes.get(relationship.getStartNode().getId());
+                    if (child != null) {
+                        children.add(child);
+                    }
+                }
+                out.writeInt(children.size());
+                for (int child : children) {
+                    out.writeInt(child);
+                }
+            }
+            out.flush();
+
+            ByteBuffer table = ByteBuffer.allocate(offsets.length * 8);
+            table.asLongBuffer().put(offsets);
+            fos.getChannel().write(table, offsetTablePosition);
+            // the data must be on disk before the rename makes it visible to readers
+            fos.getChannel().force(true);
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("export() - " + label + " hierarchy snapshot with " + nodes.size() + " nodes written to: " + file);
+        return file;
+    }
+
+    /**
+     * Creates a private directory inside <code>directory</code> to export snapshots into before they are published,
+     * on the same file system so that {@link #publish(File, File)} can move them atomically.
+     */
+    public static File createStagingDirectory(File directory) throws IOException {
+        Files.createDirectories(directory.toPath());
+        return Files.createTempDirectory(directory.toPath(), STAGING_PREFIX).toFile();
+    }
+
+    /**
+     * Atomically moves every snapshot of the staging directory into <code>directory</code>, then deletes the staging directory.
+     */
+    public static void publish(File stagingDirectory, File directory) throws IOException {
+        File[] files = stagingDirectory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (files == null) {
+            throw new IOException("Not a snapshot staging directory: " + stagingDirectory);
+        }
+        for (File staged : files) {
+            File file = new File(directory, staged.getName());
+            Files.move(staged.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("publish() - hierarchy snapshot published to: " + file);
+        }
+        Files.delete(stagingDirectory.toPath());
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int[] getRoots() {
+        return roots.clone();
+    }
+
+    public SnapshotNode getNode(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("No node " + index + " in " + label + " snapshot of size " + size);
+        }
+        int position = (int) buffer.getLong(offsetTablePosition + 8 * index);
+        String iri = readString(buffer, position);
+        position += 4 + buffer.getInt(position);
+        String displayName = readString(buffer, position);
+        position += 4 + buffer.getInt(position);
+        String[] synonyms = new String[buffer.getInt(position)];
+        position += 4;
+        for (int i = 0; i < synonyms.length; i++) {
+            synonyms[i] = readString(buffer, position);
+            position += 4 + buffer.getInt(position);
+        }
+        return new SnapshotNode(index, iri, displayName, synonyms, readInts(buffer, position));
+    }
+
+    /**
+     * Returns the index of the node with the given iri, or -1. The iri index is built on first use.
+     */
+    public synchronized int indexOf(String iri) {
+        if (iriIndex == null) {
+            iriIndex = new HashMap<String, Integer>(size * 2);
+            for (int i = 0; i < size; i++) {
+                iriIndex.put(getNode(i).getIri(), i);
+            }
+        }
+        return iriIndex.getOrDefault(iri, -1);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer, int position) {
+        byte[] bytes = new byte[buffer.getInt(position)];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + 4);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int position) {
+        int[] values = new int[buffer.getInt(position)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getInt(position + 4 + 4 * i);
+        }
+        return values;
+    }
+
+    public static class SnapshotNode {
+
+        private final int index;
+        private final String iri;
+        private final String displayName;
+        private final String[] synonyms;
+        private final int[] children;
+
+        public SnapshotNode(int index, String iri, String displayName, String[] synonyms, int[] children) {
+            this.index = index;
+            this.iri = iri;
+            this.displayName = displayName;
+            this.synonyms = synonyms;
+            this.children = children;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getIri() {
+            return iri;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public String[] getSynonyms() {
+            return synonyms;
+        }
+
+        public int[] getChildren() {
+            return children;
+        }
+
+    }
+
+}
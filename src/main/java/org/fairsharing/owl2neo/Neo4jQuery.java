@@ -2,57 +2,245 @@ package org.fairsharing.owl2neo;
 
 import org.apache.commons.cli.*;
 import org.neo4j.graphdb.GraphDatabaseService;
-import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.factory.GraphDatabaseFactory;
 
 import java.io.File;
-import java.util.Map;
+import java.io.IOException;
+import java.util.*;
 
 public class Neo4jQuery {
 
     private static final int OK_STATUS = 0;
     private static final int ERR_STATUS = 1;
 
+    public static final long DEFAULT_GENERATION_CHECK_INTERVAL_MS = 1000;
+
+    private final GraphDatabaseService graphDb;
+    private final QueryResultCache cache;
+    private long generationCheckIntervalMs = DEFAULT_GENERATION_CHECK_INTERVAL_MS;
+    private long generation;
+    private long lastGenerationCheck = Long.MIN_VALUE;
+
+    public Neo4jQuery(GraphDatabaseService graphDb, QueryResultCache cache) {
+        this.graphDb = graphDb;
+        this.cache = cache;
+    }
+
+    public GraphDatabaseService getGraphDb() {
+        return graphDb;
+    }
+
+    public QueryResultCache getCache() {
+        return cache;
+    }
+
+    public long getGenerationCheckIntervalMs() {
+        return generationCheckIntervalMs;
+    }
+
+    public void setGenerationCheckIntervalMs(long generationCheckIntervalMs) {
+        this.generationCheckIntervalMs = generationCheckIntervalMs;
+    }
+
+    /**
+     * Runs a read-only query and returns its rows, with nodes and relationships replaced by their properties
+     * so that they can outlive the transaction. Results are served from the cache until the import generation changes,
+     * and are read-only either way: array values come back as lists, see {@link QueryResultCache#freeze(Object)}.
+     */
+    public List<Map<String, Object>> execute(String query, Map<String, Object> parameters) {
+        long currentGeneration = getCurrentGeneration();
+        List<Map<String, Object>> rows = cache.get(currentGeneration, query, parameters);
+        if (rows != null) {
+            return rows;
+        }
+        rows = new ArrayList<Map<String, Object>>();
+        try (Transaction tx = graphDb.beginTx()) {
+            Result result = graphDb.execute(query, parameters == null ? Collections.<String, Object>emptyMap() : parameters);
+            while (result.hasNext()) {
+                Map<String, Object> row = new LinkedHashMap<String, Object>();
+                for (Map.Entry<String, Object> entry : result.next().entrySet()) {
+                    row.put(entry.getKey(), toValue(entry.getValue()));
+                }
+                rows.add(row);
+            }
+            tx.success();
+        }
+        return cache.put(currentGeneration, query, parameters, rows);
+    }
+
+    /**
+     * The generation is read from the graph at most once per check interval, to keep cache hits free of round-trips.
+     */
+    protected synchronized long getCurrentGeneration() {
+        long now = System.currentTimeMillis();
+        if (lastGenerationCheck == Long.MIN_VALUE || now - lastGenerationCheck >= generationCheckIntervalMs) {
+            try (Transaction tx = graphDb.beginTx()) {
+                generation = Owl2Neo4jLoader.getGeneration(graphDb);
+                tx.success();
+            }
+            lastGenerationCheck = now;
+        }
+        return generation;
+    }
+
+    private static Object toValue(Object value) {
+        if (value instanceof PropertyContainer) {
+            return new LinkedHashMap<String, Object>(((PropertyContainer) value).getAllProperties());
+        }
+        if (value instanceof List) {
+            List<Object> values = new ArrayList<Object>();
+            for (Object item : (List<?>) value) {
+                values.add(toValue(item));
+            }
+            return values;
+        }
+        return value;
+    }
+
     protected static Options getOptions() {
         Option dbPath = new Option("d", "db-path", true, "The local location of the database");
         dbPath.setRequired(false);
         Options options = new Options();
         options.addOption(dbPath);
+        Option snapshotDir = new Option("s", "snapshot-dir", true, "Export the hierarchy snapshots to this directory instead of querying");
+        snapshotDir.setRequired(false);
+        options.addOption(snapshotDir);
+        Option label = new Option("l", "label", true, "The label(s) to export, all the labels in use by default");
+        label.setRequired(false);
+        options.addOption(label);
+        Option cacheSize = new Option("c", "cache-size", true, "The maximum number of query results kept in the cache");
+        cacheSize.setRequired(false);
+        options.addOption(cacheSize);
+        Option benchmark = new Option("b", "benchmark", false, "Replay a query workload and report throughput and latency percentiles");
+        benchmark.setRequired(false);
+        options.addOption(benchmark);
+        Option workload = new Option("f", "workload-file", true, "The workload to replay, lines of 'name | weight | cypher' (default: built-in workload)");
+        workload.setRequired(false);
+        options.addOption(workload);
+        Option threads = new Option("n", "threads", true, "The number of concurrent benchmark threads (default " + WorkloadBenchmark.DEFAULT_THREADS + ")");
+        threads.setRequired(false);
+        options.addOption(threads);
+        Option operations = new Option("q", "queries", true, "The number of queries per benchmark run (default " + WorkloadBenchmark.DEFAULT_OPERATIONS + ")");
+        operations.setRequired(false);
+        options.addOption(operations);
+        Option benchmarkLabel = new Option("t", "benchmark-label", true, "The label replacing {label} in the workload (default " + WorkloadBenchmark.DEFAULT_LABEL + ")");
+        benchmarkLabel.setRequired(false);
+        options.addOption(benchmarkLabel);
         return options;
     }
 
+    /**
+     * Samples the benchmark parameters, then re-opens the store so that the first timed run starts on a cold page cache.
+     */
+    protected static void benchmark(GraphDatabaseService graphDb, File storeDir, CommandLine cmd) {
+        try {
+            List<WorkloadBenchmark.WorkloadQuery> workload = WorkloadBenchmark.loadWorkload(cmd.getOptionValue("f"));
+            String label = cmd.getOptionValue("t", WorkloadBenchmark.DEFAULT_LABEL);
+            WorkloadBenchmark sampler = new WorkloadBenchmark(graphDb, workload);
+            sampler.setLabel(label);
+            Map<String, List<Object>> parameterPools = sampler.sampleParameters();
+            graphDb.shutdown();
+            graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(storeDir);
+            WorkloadBenchmark benchmark = new WorkloadBenchmark(graphDb, workload, parameterPools);
+            benchmark.setLabel(label);
+            benchmark.setThreads(Integer.parseInt(cmd.getOptionValue("n", String.valueOf(WorkloadBenchmark.DEFAULT_THREADS))));
+            benchmark.setOperations(Integer.parseInt(cmd.getOptionValue("q", String.valueOf(WorkloadBenchmark.DEFAULT_OPERATIONS))));
+            for (WorkloadBenchmark.Report report : benchmark.runColdAndWarm()) {
+                System.out.println(report);
+            }
+        }
+        catch (Exception e) {
+            System.err.println("Exception caught: " + e.getMessage());
+            e.printStackTrace();
+            graphDb.shutdown();
+            System.exit(ERR_STATUS);
+        }
+        graphDb.shutdown();
+        System.out.println("Exiting with success...");
+        System.exit(OK_STATUS);
+    }
+
+    protected static boolean exportSnapshots(GraphDatabaseService graphDb, File directory, String[] labels) {
+        Transaction tx = graphDb.beginTx();
+        try {
+            List<String> labelNames = new ArrayList<String>();
+            if (labels != null) {
+                labelNames.addAll(Arrays.asList(labels));
+            }
+            else {
+                graphDb.getAllLabelsInUse().forEach(label -> {
+                    if (!label.name().equals(Owl2Neo4jLoader.METADATA_LABEL)) {
+                        labelNames.add(label.name());
+                    }
+                });
+            }
+            for (String label : labelNames) {
+                HierarchySnapshot.export(graphDb, label.trim(), directory);
+            }
+            tx.success();
+            return true;
+        }
+        catch (Exception e) {
+            System.err.println("Exception caught: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        finally {
+            tx.close();
+        }
+    }
+
     public static void main(String[] args) {
 
         CommandLineParser parser = new DefaultParser();
         CommandLine cmd = Utils.parseCommandLine(getOptions(), args);
 
         String graphDbPath = cmd.getOptionValue("d", Owl2Neo4jLoader.GRAPH_DB_PATH);
-        GraphDatabaseService graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(new File(graphDbPath));
+        File storeDir = new File(graphDbPath);
+        try {
+            // pin the store generation the link points to now, a later switch must not affect this reader
+            storeDir = StoreGenerations.resolve(graphDbPath);
+            System.out.println("Opening graph database: " + storeDir);
+        }
+        catch (IOException e) {
+            System.err.println("Exception caught: " + e.getMessage());
+        }
+        GraphDatabaseService graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(storeDir);
+        if (cmd.hasOption("s")) {
+            if (!exportSnapshots(graphDb, new File(cmd.getOptionValue("s")), cmd.getOptionValues("l"))) {
+                graphDb.shutdown();
+                System.exit(ERR_STATUS);
+            }
+            if (!cmd.hasOption("b")) {
+                graphDb.shutdown();
+                System.out.println("Exiting with success...");
+                System.exit(OK_STATUS);
+            }
+        }
+        if (cmd.hasOption("b")) {
+            benchmark(graphDb, storeDir, cmd);
+        }
+        int cacheSize = Integer.parseInt(cmd.getOptionValue("c", String.valueOf(QueryResultCache.DEFAULT_MAX_ENTRIES)));
+        Neo4jQuery neo4jQuery = new Neo4jQuery(graphDb, new QueryResultCache(cacheSize));
         String query = "MATCH (n) RETURN n ORDER BY ID(n) DESC LIMIT 30;";
-        Transaction tx = graphDb.beginTx();
         try {
-            Result result = graphDb.execute(query);
-            while (result.hasNext()) {
-                Map<String, Object> row = result.next();
-                for (String key : result.columns()) {
-                    Node node = (Node) row.get(key);
-                    Object name = node.getProperty("name");
-                    System.out.printf("%s = %s; name = %s%n", key, row.get(key), name);
+            for (Map<String, Object> row : neo4jQuery.execute(query, null)) {
+                for (Map.Entry<String, Object> entry : row.entrySet()) {
+                    Object name = entry.getValue() instanceof Map ? ((Map) entry.getValue()).get("name") : null;
+                    System.out.printf("%s = %s; name = %s%n", entry.getKey(), entry.getValue(), name);
                 }
 
             }
-            tx.success();
         }
         catch (Exception e) {
             System.err.println("Exception caught: " + e.getMessage());
             e.printStackTrace();
             System.exit(ERR_STATUS);
         }
-        finally {
-            tx.close();
-        }
+        System.out.println(neo4jQuery.getCache());
         System.out.println("Exiting with success...");
         System.exit(OK_STATUS);
 
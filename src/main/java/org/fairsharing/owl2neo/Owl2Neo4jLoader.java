@@ -11,6 +11,7 @@ import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.*;
 import org.semanticweb.owlapi.reasoner.NodeSet;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.OWLReasonerConfiguration;
 
 
 import org.semanticweb.owlapi.search.EntitySearcher;
@@ -26,8 +27,8 @@ public class Owl2Neo4jLoader {
 
     private static final String HASH = "#";
     private static final String GREATER_THAN = ">";
-    private static final String IS_A = "isA";
-    private static final String PART_OF = "partOf";
+    static final String IS_A = "isA";
+    static final String PART_OF = "partOf";
 
     public static final String GRAPH_DB_PATH = "var/fairsharing-ont-lite.db";
     // public static final String GRAPH_DB_PATH = "neo4j-community-3.2.3/data/fairsharing-ont.db";
@@ -39,6 +40,12 @@ public class Owl2Neo4jLoader {
     public static final String HERMIT = "HERMIT";
     public static final String JFACT = "JFACT";
 
+    public static final String LOAD_MODE_REASONER = "REASONER";
+    public static final String LOAD_MODE_AXIOMS = "AXIOMS";
+
+    public static final String METADATA_LABEL = "OWL2NEO_METADATA";
+    public static final String GENERATION = "generation";
+
     public static final String IN_SUBJECT_VALUE_FAIRSHARING = "FAIRsharing";
 
     private static final String IN_SUBJECT_IRI = "http://www.geneontology.org/formats/oboInOwl#inSubset";
@@ -63,6 +70,7 @@ public class Owl2Neo4jLoader {
     private OWLDataFactory dataFactory;
 
     private OWLReasoner reasoner;
+    private String loadMode = LOAD_MODE_REASONER;
 
     private OWLAnnotationProperty oboAlternativeTerm;
     private OWLAnnotationProperty definition;
@@ -107,6 +115,28 @@ public class Owl2Neo4jLoader {
 
     }
 
+    public OWLReasoner getReasoner(String reasonerType, OWLReasonerConfiguration configuration) {
+        switch (reasonerType) {
+            case HERMIT:
+                return (new ReasonerFactory()).createReasoner(ontology, configuration);
+
+            case JFACT:
+                return (new JFactFactory()).createReasoner(ontology, configuration);
+
+            default:
+                return OpenlletReasonerFactory.getInstance().createReasoner(ontology, configuration);
+        }
+
+    }
+
+    /**
+     * Sets an already classified reasoner (e.g. the winner of a {@link ReasonerRace}) to be used by the import
+     * instead of a new Openllet one.
+     */
+    public void setReasoner(OWLReasoner reasoner) {
+        this.reasoner = reasoner;
+    }
+
     public OWLOntology getOntology() {
         return ontology;
     }
@@ -115,6 +145,14 @@ public class Owl2Neo4jLoader {
         this.ontology = ontology;
     }
 
+    public String getLoadMode() {
+        return loadMode;
+    }
+
+    public void setLoadMode(String loadMode) {
+        this.loadMode = loadMode;
+    }
+
     public OWLAnnotationProperty getOboAlternativeTerm() {
         return oboAlternativeTerm;
     }
@@ -319,7 +357,7 @@ public class Owl2Neo4jLoader {
     }
 
     public void importOntology(String label) throws Exception {
-        final OWLReasoner reasoner = getReasoner();
+        final OWLReasoner reasoner = this.reasoner != null ? this.reasoner : getReasoner();
         if (!reasoner.isConsistent()) {
             throw new Exception("Ontology is inconsistent");
         }
@@ -336,19 +374,29 @@ public class Owl2Neo4jLoader {
             final AtomicInteger counter = new AtomicInteger();
             long totalCount = ontology.classesInSignature().count();
             System.out.println("Total count is: " + totalCount);
+            final boolean useReasonerLinks = !LOAD_MODE_AXIOMS.equalsIgnoreCase(loadMode);
             ontology.classesInSignature().forEach(c -> {
                 long start = System.nanoTime();
-                loadClassAsNode(reasoner, thingNode, c, label);
+                Node classNode = loadClassAsNode(thingNode, c, label);
+                if (useReasonerLinks) {
+                    loadSuperClassLinks(reasoner, thingNode, c, classNode);
+                }
                 long end = System.nanoTime();
                 double duration = end - start / 1000000;
                 System.out.println("Duration of current iteration is:" + duration + " ms");
                 System.out.println("Done item #" + counter.incrementAndGet());
             });
+            if (!useReasonerLinks) {
+                loadAxiomLinks(thingNode);
+            }
+            stampGeneration(graphDb);
             tx.success();
         }
         catch (Exception e) {
             System.err.println("Owch, shucks, exception thrown:" + e.getMessage());
             e.printStackTrace();
+            // the transaction is rolled back: callers must not go on as if the ontology was loaded
+            throw e;
         }
         finally {
             tx.close();
@@ -356,11 +404,30 @@ public class Owl2Neo4jLoader {
 
     }
 
-    private void loadClassAsNode(OWLReasoner reasoner, Node thingNode, OWLClass c, String label) {
-        String classString = c.toString(), classLabel = classString;
-        if (classString.contains(HASH)) {
-            classString = classString.substring(classString.indexOf(HASH)+1, classString.indexOf(GREATER_THAN));
-        }
+    /**
+     * Bumps the import generation stored on the metadata node, so that readers can tell the graph has changed.
+     * The generation never goes below the current time, which keeps it increasing when the store is rebuilt from scratch.
+     * Must be called inside a transaction.
+     */
+    public static long stampGeneration(GraphDatabaseService graphDb) {
+        Node metadata = graphDb.findNodes(Label.label(METADATA_LABEL)).stream().findFirst()
+                .orElseGet(() -> graphDb.createNode(Label.label(METADATA_LABEL)));
+        long generation = Math.max((Long) metadata.getProperty(GENERATION, 0L) + 1, System.currentTimeMillis());
+        metadata.setProperty(GENERATION, generation);
+        System.out.println("stampGeneration() - import generation is: " + generation);
+        return generation;
+    }
+
+    /**
+     * Returns the import generation of the graph, 0 if nothing was imported yet. Must be called inside a transaction.
+     */
+    public static long getGeneration(GraphDatabaseService graphDb) {
+        return graphDb.findNodes(Label.label(METADATA_LABEL)).stream().findFirst()
+                .map(metadata -> (Long) metadata.getProperty(GENERATION, 0L)).orElse(0L);
+    }
+
+    private Node loadClassAsNode(Node thingNode, OWLClass c, String label) {
+        String classString = getNodeName(c);
         IRI iri = c.getIRI();
         String iriString = iri.getIRIString();
 
@@ -460,22 +527,7 @@ public class Owl2Neo4jLoader {
             classNode.setProperty("broadSynonyns", broadSynonyms.toArray(new String[broadSynonyms.size()]));
             classNode.setProperty("relatedSynonyms", relatedSynonyms.toArray(new String[relatedSynonyms.size()]));
             System.out.println("Current OWL class is: " + classString);
-
-            NodeSet<OWLClass> superClasses = reasoner.getSuperClasses(c, true);
-
-            if (superClasses.isEmpty()) {
-                classNode.createRelationshipTo(thingNode, RelationshipType.withName(IS_A));
-            } else {
-                for (org.semanticweb.owlapi.reasoner.Node<OWLClass> parentOWLNode : superClasses) {
-                    OWLClassExpression parent = parentOWLNode.getRepresentativeElement();
-                    String parentString = parent.toString();
-                    if (parentString.contains(HASH)) {
-                        parentString = parentString.substring(parentString.indexOf(HASH) + 1, parentString.indexOf(GREATER_THAN));
-                    }
-                    Node parentNode = getOrCreateWithUniqueFactory(parentString);
-                    classNode.createRelationshipTo(parentNode, RelationshipType.withName(PART_OF));
-                }
-            }
+            return classNode;
         /*
             tx.success();
         }
@@ -484,17 +536,103 @@ public class Owl2Neo4jLoader {
         }*/
     }
 
+    private void loadSuperClassLinks(OWLReasoner reasoner, Node thingNode, OWLClass c, Node classNode) {
+        NodeSet<OWLClass> superClasses = reasoner.getSuperClasses(c, true);
+
+        if (superClasses.isEmpty()) {
+            classNode.createRelationshipTo(thingNode, RelationshipType.withName(IS_A));
+        } else {
+            for (org.semanticweb.owlapi.reasoner.Node<OWLClass> parentOWLNode : superClasses) {
+                OWLClassExpression parent = parentOWLNode.getRepresentativeElement();
+                Node parentNode = getOrCreateWithUniqueFactory(getNodeName(parent));
+                classNode.createRelationshipTo(parentNode, RelationshipType.withName(PART_OF));
+            }
+        }
+    }
+
+    /**
+     * Creates all the class links in a single pass over the TBox axioms, including the ones
+     * coming from existential restrictions, instead of querying the reasoner once per class.
+     */
+    private void loadAxiomLinks(Node thingNode) {
+        EdgeBuffer buffer = new EdgeBuffer(edges -> {
+            for (Edge edge : edges) {
+                Node classNode = getOrCreateWithUniqueFactory(getNodeName(edge.getChild()));
+                Node parentNode = edge.getParent().isOWLThing() ? thingNode : getOrCreateWithUniqueFactory(getNodeName(edge.getParent()));
+                Relationship relationship = classNode.createRelationshipTo(parentNode, RelationshipType.withName(edge.getType()));
+                if (edge.getProperty() != null) {
+                    relationship.setProperty("iri", edge.getProperty().getIRI().getIRIString());
+                }
+            }
+        });
+        new AxiomEdgeExtractor(ontology, dataFactory, buffer, PART_OF, IS_A).extract();
+        System.out.println("loadAxiomLinks() - links created: " + buffer.getTotal());
+    }
+
+    protected static String getNodeName(OWLClassExpression c) {
+        String classString = c.toString();
+        if (classString.contains(HASH)) {
+            classString = classString.substring(classString.indexOf(HASH) + 1, classString.indexOf(GREATER_THAN));
+        }
+        return classString;
+    }
+
     protected static Options getOptions() {
-        Option ontologyPath = new Option("o", "ontology-path", true, "The local location of the OWL file");
+        Option ontologyPath = new Option("o", "ontology-path", true, "The location of the OWL file: a local path or a URL, optionally .gz or .zst compressed");
         ontologyPath.setRequired(true);
         Options options = new Options();
         options.addOption(ontologyPath);
         Option dbPath = new Option("d", "db-path", true, "The local location of the database");
         dbPath.setRequired(false);
         options.addOption(dbPath);
+        Option loadMode = new Option("m", "load-mode", true, "How class links are loaded: REASONER (default) or AXIOMS");
+        loadMode.setRequired(false);
+        options.addOption(loadMode);
+        Option snapshotDir = new Option("s", "snapshot-dir", true, "Where to export the hierarchy snapshots after the import");
+        snapshotDir.setRequired(false);
+        options.addOption(snapshotDir);
+        Option blueGreen = new Option("b", "blue-green", false, "Build into a new store generation and switch the database path to it once validated");
+        blueGreen.setRequired(false);
+        options.addOption(blueGreen);
+        Option keep = new Option("k", "keep-generations", true, "How many store generations to keep in blue/green mode (default " + StoreGenerations.DEFAULT_KEEP + ")");
+        keep.setRequired(false);
+        options.addOption(keep);
+        Option reasoners = new Option("r", "reasoners", true, "Comma separated reasoners (OPENLLET or its alias PELLET, HERMIT, JFACT) to race, the first consistent classification wins");
+        reasoners.setRequired(false);
+        options.addOption(reasoners);
+        Option reasonerTimeout = new Option("t", "reasoner-timeout", true, "Per-reasoner timeout in ms when racing (default " + ReasonerRace.DEFAULT_TIMEOUT_MS + ")");
+        reasonerTimeout.setRequired(false);
+        options.addOption(reasonerTimeout);
+        Option winnersFile = new Option("w", "winners-file", true, "Where the winning reasoner of each ontology is recorded (default " + ReasonerRace.DEFAULT_WINNERS_FILE + ")");
+        winnersFile.setRequired(false);
+        options.addOption(winnersFile);
+        Option readBuffer = new Option("i", "read-buffer", true, "Read-ahead buffer size in bytes for the ontology documents (default " + StreamingDocumentSource.DEFAULT_BUFFER_SIZE + ")");
+        readBuffer.setRequired(false);
+        options.addOption(readBuffer);
         return options;
     }
 
+    /**
+     * Number of nodes, and minimum number of links, the import of the ontology should produce:
+     * one per distinct class name, owl:Thing aside. Used to validate a store before making it live.
+     */
+    public static long getExpectedNodeCount(OWLOntology ontology) {
+        return ontology.classesInSignature().filter(c -> !c.isOWLThing()).map(Owl2Neo4jLoader::getNodeName).distinct().count();
+    }
+
+    public static void validateStore(GraphDatabaseService graphDb, long expectedNodes) throws Exception {
+        try (Transaction tx = graphDb.beginTx()) {
+            long nodes = graphDb.getAllNodes().stream().count();
+            long relationships = graphDb.getAllRelationships().stream().count();
+            System.out.println("validateStore() - " + nodes + " nodes and " + relationships + " relationships, " + expectedNodes + " classes expected");
+            if (nodes < expectedNodes || relationships < expectedNodes) {
+                throw new Exception("Store validation failed: " + nodes + " nodes and " + relationships
+                        + " relationships for " + expectedNodes + " classes");
+            }
+            tx.success();
+        }
+    }
+
     protected static String determineLabel(String filename) {
         filename = filename.toLowerCase();
         if (filename.contains("disciplines") || filename.contains("srao")) return "DISCIPLINE";
@@ -503,48 +641,156 @@ public class Owl2Neo4jLoader {
         else return "GENERIC";
     }
 
+    /**
+     * Shuts the database down (when still open) and deletes what a failed run built, so that a half-built
+     * store generation is never listed, rolled back to or counted by {@link StoreGenerations#prune(int)}.
+     */
+    private static void exitWithError(GraphDatabaseService graphDb, File... partialOutputs) {
+        if (graphDb != null) {
+            graphDb.shutdown();
+        }
+        for (File partialOutput : partialOutputs) {
+            if (partialOutput != null) {
+                System.err.println("Deleting partial output: " + partialOutput);
+                FileUtils.deleteQuietly(partialOutput);
+            }
+        }
+        System.exit(Utils.ERR_STATUS);
+    }
+
     public static void main(String[] args) {
 
         CommandLineParser parser = new DefaultParser();
         CommandLine cmd = Utils.parseCommandLine(getOptions(), args);
         String graphDbPath = cmd.getOptionValue("d", Owl2Neo4jLoader.GRAPH_DB_PATH);
+        boolean blueGreen = cmd.hasOption("b");
+        StoreGenerations storeGenerations = new StoreGenerations(new File(graphDbPath));
+        File storeDir = new File(graphDbPath);
+
+        // reasoner names are checked before the store is touched
+        List<String> raceReasoners = new ArrayList<String>();
+        if (cmd.hasOption("r")) {
+            try {
+                raceReasoners = ReasonerRace.resolveReasonerTypes(Arrays.asList(cmd.getOptionValue("r").split(",")));
+            }
+            catch (IllegalArgumentException e) {
+                System.err.println("Exception caught: " + e.getMessage());
+                System.exit(Utils.ERR_STATUS);
+            }
+        }
 
         try {
-            System.out.println("Deleting graph database directory");
-            FileUtils.deleteDirectory(new File(graphDbPath));
+            if (blueGreen) {
+                storeDir = storeGenerations.createGeneration();
+            }
+            else {
+                System.out.println("Deleting graph database directory");
+                FileUtils.deleteDirectory(new File(graphDbPath));
+            }
         }
         catch (IOException e) {
             System.err.println("Exception caught: " + e.getMessage());
+            if (blueGreen) {
+                System.exit(Utils.ERR_STATUS);
+            }
         }
 
-        GraphDatabaseService graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(new File(graphDbPath));
+        GraphDatabaseService graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(storeDir);
         String[] owlFiles = cmd.getOptionValues("o");
+        String loadMode = cmd.getOptionValue("m", LOAD_MODE_REASONER).toUpperCase();
+        Set<String> labels = new LinkedHashSet<String>();
+        long expectedNodes = 0;
+
+        int readBufferSize = Integer.parseInt(cmd.getOptionValue("i", String.valueOf(StreamingDocumentSource.DEFAULT_BUFFER_SIZE)));
 
         for (String filePath : owlFiles) {
-            File file = new File(filePath.trim());
+            StreamingDocumentSource source = new StreamingDocumentSource(filePath.trim(), readBufferSize);
             try {
-                OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
-                System.out.println("Preparing to load ontology from file:" + file.getAbsolutePath());
-                OWLOntology ontology = manager.loadOntologyFromOntologyDocument(file);
+                // reasoners racing on the same ontology read it from several threads
+                OWLOntologyManager manager = raceReasoners.isEmpty() ? OWLManager.createOWLOntologyManager()
+                        : OWLManager.createConcurrentOWLOntologyManager();
+                System.out.println("Preparing to load ontology from:" + source.getDocumentIRI());
+                long parseStart = System.nanoTime();
+                OWLOntology ontology = manager.loadOntologyFromOntologyDocument(source);
+                System.out.println("Parsed ontology in " + (System.nanoTime() - parseStart) / 1000000 + " ms, read "
+                        + source.getBytesRead() + " bytes" + (source.isCompressed() ? " (" + source.getUncompressedBytesRead() + " uncompressed)" : ""));
                 OWLDataFactory factory = manager.getOWLDataFactory();
                 System.out.println("Loaded ontology" + ontology);
                 Owl2Neo4jLoader loader = new Owl2Neo4jLoader(graphDb, ontology, factory);
+                loader.setLoadMode(loadMode);
                 loader.createConstraints();
                 String label = determineLabel(filePath);
+                labels.add(label);
                 System.out.println("Label is: " + label);
                 loader.loadAlternativeTermsFromOntology();
                 loader.loadSynonymsFromOntology();
                 loader.loadInSubjectAnnotationProperty();
                 loader.loadDefinitionAnnotationProperty();
+                if (!raceReasoners.isEmpty()) {
+                    ReasonerRace race = new ReasonerRace(loader, raceReasoners,
+                            Long.parseLong(cmd.getOptionValue("t", String.valueOf(ReasonerRace.DEFAULT_TIMEOUT_MS))),
+                            new File(cmd.getOptionValue("w", ReasonerRace.DEFAULT_WINNERS_FILE)));
+                    loader.setReasoner(race.race());
+                }
                 loader.importOntology(label);
+                expectedNodes += getExpectedNodeCount(ontology);
             }
             catch (Exception e) {
                 System.err.println("Exception caught: " + e.getMessage());
                 e.printStackTrace();
-                System.exit(Utils.ERR_STATUS);
+                exitWithError(graphDb, blueGreen ? storeDir : null);
+            }
+        }
+        if (blueGreen) {
+            try {
+                validateStore(graphDb, expectedNodes);
+            }
+            catch (Exception e) {
+                System.err.println("Exception caught: " + e.getMessage());
+                exitWithError(graphDb, storeDir);
+            }
+        }
+        // snapshots are staged and only published once the store they were read from is validated and live
+        File snapshotDir = cmd.hasOption("s") ? new File(cmd.getOptionValue("s")) : null;
+        File snapshotStaging = null;
+        if (snapshotDir != null) {
+            try (Transaction tx = graphDb.beginTx()) {
+                snapshotStaging = HierarchySnapshot.createStagingDirectory(snapshotDir);
+                for (String label : labels) {
+                    HierarchySnapshot.export(graphDb, label, snapshotStaging);
+                }
+                tx.success();
+            }
+            catch (IOException e) {
+                System.err.println("Exception caught: " + e.getMessage());
+                e.printStackTrace();
+                exitWithError(graphDb, blueGreen ? storeDir : null, snapshotStaging);
             }
         }
         graphDb.shutdown();
+        if (blueGreen) {
+            try {
+                storeGenerations.activate(storeDir);
+            }
+            catch (IOException e) {
+                System.err.println("Exception caught: " + e.getMessage());
+                e.printStackTrace();
+                exitWithError(null, storeDir, snapshotStaging);
+            }
+        }
+        try {
+            if (snapshotStaging != null) {
+                HierarchySnapshot.publish(snapshotStaging, snapshotDir);
+            }
+            if (blueGreen) {
+                storeGenerations.prune(Integer.parseInt(cmd.getOptionValue("k", String.valueOf(StoreGenerations.DEFAULT_KEEP))));
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Exception caught: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(Utils.ERR_STATUS);
+        }
         System.out.println("Exiting with success...");
         System.exit(Utils.OK_STATUS);
 
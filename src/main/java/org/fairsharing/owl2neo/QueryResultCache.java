@@ -0,0 +1,189 @@
+package org.fairsharing.owl2neo;
+
+import java.lang.reflect.Array;
+import java.util.*;
+
+/**
+ * Bounded LRU cache of query results, keyed by query and parameters.
+ * Every entry belongs to the import generation it was read from: when a newer generation is seen the whole cache is
+ * dropped, as the graph is only ever modified by {@link Owl2Neo4jLoader}. Generations only grow, so lookups and results
+ * from an older generation (a reader that started before the import) are ignored rather than rolling the cache back.
+ * Cached rows are frozen, so that callers sharing them cannot change what the next caller gets.
+ */
+public class QueryResultCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final int maxEntries;
+    private final LinkedHashMap<Key, List<Map<String, Object>>> entries;
+    private long generation = -1;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    public QueryResultCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public QueryResultCache(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Cache size cannot be negative: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<Key, List<Map<String, Object>>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<Map<String, Object>>> eldest) {
+                if (size() > QueryResultCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached rows for the query, or null. Entries from another generation are never returned.
+     */
+    public synchronized List<Map<String, Object>> get(long generation, String query, Map<String, Object> parameters) {
+        List<Map<String, Object>> rows = checkGeneration(generation) ? entries.get(new Key(query, parameters)) : null;
+        if (rows == null) {
+            misses++;
+        }
+        else {
+            hits++;
+        }
+        return rows;
+    }
+
+    /**
+     * Caches the rows for the query and returns the frozen copy that {@link #get} will hand out, see {@link #freeze(Object)}.
+     * Rows read from an older generation than the current one are not cached.
+     */
+    public List<Map<String, Object>> put(long generation, String query, Map<String, Object> parameters, List<Map<String, Object>> rows) {
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> frozen = (List<Map<String, Object>>) freeze(rows);
+        synchronized (this) {
+            if (checkGeneration(generation) && maxEntries > 0) {
+                entries.put(new Key(query, parameters), frozen);
+            }
+        }
+        return frozen;
+    }
+
+    /**
+     * Returns an unmodifiable deep copy of a query value: maps and lists are copied and wrapped,
+     * arrays (how multi-valued properties such as synonyms are stored) become unmodifiable lists.
+     */
+    protected static Object freeze(Object value) {
+        if (value instanceof Map) {
+            Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+            ((Map<?, ?>) value).forEach((k, v) -> map.put(k, freeze(v)));
+            return Collections.unmodifiableMap(map);
+        }
+        if (value instanceof Collection) {
+            List<Object> list = new ArrayList<Object>();
+            ((Collection<?>) value).forEach(item -> list.add(freeze(item)));
+            return Collections.unmodifiableList(list);
+        }
+        if (value != null && value.getClass().isArray()) {
+            List<Object> list = new ArrayList<Object>();
+            for (int i = 0; i < Array.getLength(value); i++) {
+                list.add(freeze(Array.get(value, i)));
+            }
+            return Collections.unmodifiableList(list);
+        }
+        return value;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Moves the cache to a newer generation, dropping every entry. Returns false for a stale generation.
+     */
+    private boolean checkGeneration(long generation) {
+        if (generation < this.generation) {
+            return false;
+        }
+        if (generation > this.generation) {
+            if (!entries.isEmpty()) {
+                invalidations++;
+            }
+            entries.clear();
+            this.generation = generation;
+        }
+        return true;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("QueryResultCache[size=%d/%d, generation=%d, hits=%d, misses=%d, hitRate=%.2f, evictions=%d, invalidations=%d]",
+                entries.size(), maxEntries, generation, hits, misses, getHitRate(), evictions, invalidations);
+    }
+
+    private static class Key {
+
+        private final String query;
+        private final Object parameters;
+
+        Key(String query, Map<String, Object> parameters) {
+            this.query = query;
+            // frozen so that array parameters compare by content
+            this.parameters = parameters == null ? Collections.emptyMap() : freeze(parameters);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return query.equals(key.query) && parameters.equals(key.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, parameters);
+        }
+
+    }
+
+}
@@ -0,0 +1,237 @@
+package org.fairsharing.owl2neo;
+
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.SimpleConfiguration;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Classifies an ontology with several reasoners at once and keeps the first consistent classification.
+ * The others are interrupted and disposed, and the winner is recorded per ontology in a properties file: on later runs
+ * the recorded winner is tried alone first, and the race only happens if it fails or times out.
+ */
+public class ReasonerRace {
+
+    public static final long DEFAULT_TIMEOUT_MS = 10 * 60 * 1000;
+    public static final String DEFAULT_WINNERS_FILE = "var/reasoner-winners.properties";
+    public static final List<String> REASONER_TYPES = Collections.unmodifiableList(
+            Arrays.asList(Owl2Neo4jLoader.OPENLLET, Owl2Neo4jLoader.HERMIT, Owl2Neo4jLoader.JFACT));
+
+    private final Owl2Neo4jLoader loader;
+    private final List<String> reasonerTypes;
+    private final long timeoutMs;
+    private final File winnersFile;
+
+    private String winner;
+    private boolean inconsistent;
+
+    public ReasonerRace(Owl2Neo4jLoader loader, List<String> reasonerTypes, long timeoutMs, File winnersFile) {
+        this.loader = loader;
+        this.reasonerTypes = resolveReasonerTypes(reasonerTypes);
+        this.timeoutMs = timeoutMs;
+        this.winnersFile = winnersFile;
+    }
+
+    public String getWinner() {
+        return winner;
+    }
+
+    /**
+     * Resolves reasoner names to the types {@link Owl2Neo4jLoader#getReasoner(String, org.semanticweb.owlapi.reasoner.OWLReasonerConfiguration)}
+     * knows: PELLET is an alias of OPENLLET, unknown names are rejected and duplicates dropped, so that no reasoner
+     * races itself or gets recorded as the winner under another name.
+     */
+    public static List<String> resolveReasonerTypes(Collection<String> names) {
+        Set<String> types = new LinkedHashSet<String>();
+        for (String name : names) {
+            String type = name.trim().toUpperCase();
+            if (type.equals(Owl2Neo4jLoader.PELLET)) {
+                type = Owl2Neo4jLoader.OPENLLET;
+            }
+            if (!REASONER_TYPES.contains(type)) {
+                throw new IllegalArgumentException("Unknown reasoner '" + name.trim() + "', expected one of " + REASONER_TYPES);
+            }
+            types.add(type);
+        }
+        if (types.isEmpty()) {
+            throw new IllegalArgumentException("At least one reasoner is needed for a race");
+        }
+        return new ArrayList<String>(types);
+    }
+
+    /**
+     * Returns the reasoner that first classified the ontology as consistent.
+     * Throws if the ontology is inconsistent, or if no reasoner finished within the timeout.
+     */
+    public OWLReasoner race() throws Exception {
+        String key = getOntologyKey(loader.getOntology());
+        Properties winners = loadWinners();
+        String preferred = winners.getProperty(key);
+        List<String> contenders = new ArrayList<String>(reasonerTypes);
+
+        OWLReasoner reasoner = null;
+        if (preferred != null && contenders.remove(preferred)) {
+            System.out.println("race() - trying recorded winner " + preferred + " first for: " + key);
+            reasoner = run(Collections.singletonList(preferred));
+        }
+        if (reasoner == null && !inconsistent && !contenders.isEmpty()) {
+            System.out.println("race() - racing " + contenders + " on: " + key);
+            reasoner = run(contenders);
+        }
+        if (reasoner == null) {
+            throw new Exception(inconsistent ? "Ontology is inconsistent"
+                    : "No reasoner among " + reasonerTypes + " classified the ontology within " + timeoutMs + " ms");
+        }
+
+        System.out.println("race() - winner for " + key + " is: " + winner);
+        if (!winner.equals(preferred)) {
+            winners.setProperty(key, winner);
+            storeWinners(winners);
+        }
+        return reasoner;
+    }
+
+    private OWLReasoner run(List<String> types) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(types.size(), runnable -> {
+            // a reasoner ignoring interrupts must not keep the JVM alive
+            Thread thread = new Thread(runnable, "reasoner-race");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<OWLReasoner> completionService = new ExecutorCompletionService<OWLReasoner>(executor);
+        Map<Future<OWLReasoner>, String> futures = new HashMap<Future<OWLReasoner>, String>();
+        Entrants entrants = new Entrants();
+        for (String type : types) {
+            futures.put(completionService.submit(() -> classify(type, entrants)), type);
+        }
+
+        OWLReasoner result = null;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try {
+            for (int i = 0; i < types.size() && result == null; i++) {
+                Future<OWLReasoner> future = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (future == null) {
+                    System.out.println("run() - timed out after " + timeoutMs + " ms");
+                    break;
+                }
+                String type = futures.get(future);
+                try {
+                    result = future.get();
+                    if (result != null) {
+                        winner = type;
+                    }
+                    else {
+                        inconsistent = true;
+                    }
+                }
+                catch (ExecutionException e) {
+                    System.out.println("run() - " + type + " failed: " + e.getCause());
+                }
+            }
+        }
+        finally {
+            for (Future<OWLReasoner> future : futures.keySet()) {
+                future.cancel(true);
+            }
+            entrants.close(result);
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    private OWLReasoner classify(String type, Entrants entrants) {
+        long start = System.nanoTime();
+        OWLReasoner reasoner = loader.getReasoner(type, new SimpleConfiguration(timeoutMs));
+        if (!entrants.start(reasoner)) {
+            reasoner.dispose();
+            return null;
+        }
+        try {
+            if (!reasoner.isConsistent()) {
+                System.out.println("classify() - " + type + " found the ontology inconsistent");
+                return null;
+            }
+            reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+            System.out.println("classify() - " + type + " classified the ontology in " + (System.nanoTime() - start) / 1000000 + " ms");
+            return reasoner;
+        }
+        finally {
+            entrants.finish(reasoner);
+        }
+    }
+
+    protected static String getOntologyKey(OWLOntology ontology) {
+        return ontology.getOntologyID().getOntologyIRI().map(IRI::getIRIString)
+                .orElse(ontology.getOWLOntologyManager().getOntologyDocumentIRI(ontology).getIRIString());
+    }
+
+    private Properties loadWinners() throws IOException {
+        Properties winners = new Properties();
+        if (winnersFile.exists()) {
+            try (InputStream in = new FileInputStream(winnersFile)) {
+                winners.load(in);
+            }
+        }
+        return winners;
+    }
+
+    private void storeWinners(Properties winners) throws IOException {
+        File parent = winnersFile.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        try (OutputStream out = new FileOutputStream(winnersFile)) {
+            winners.store(out, "Fastest reasoner per ontology, written by " + ReasonerRace.class.getSimpleName());
+        }
+    }
+
+    /**
+     * The reasoners of one run. A losing reasoner is disposed by whichever ends last, the run or its own task,
+     * so that reasoners still classifying when the race is decided are released once they stop.
+     */
+    private static class Entrants {
+
+        private final List<OWLReasoner> running = new ArrayList<OWLReasoner>();
+        private final List<OWLReasoner> finished = new ArrayList<OWLReasoner>();
+        private boolean closed;
+        private OWLReasoner winner;
+
+        synchronized boolean start(OWLReasoner reasoner) {
+            if (closed) {
+                return false;
+            }
+            running.add(reasoner);
+            return true;
+        }
+
+        synchronized void finish(OWLReasoner reasoner) {
+            running.remove(reasoner);
+            if (!closed) {
+                finished.add(reasoner);
+            }
+            else if (reasoner != winner) {
+                reasoner.dispose();
+            }
+        }
+
+        synchronized void close(OWLReasoner winner) {
+            closed = true;
+            this.winner = winner;
+            for (OWLReasoner reasoner : finished) {
+                if (reasoner != winner) {
+                    reasoner.dispose();
+                }
+            }
+            for (OWLReasoner reasoner : running) {
+                reasoner.interrupt();
+            }
+        }
+
+    }
+
+}
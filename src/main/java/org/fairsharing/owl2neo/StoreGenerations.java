@@ -0,0 +1,207 @@
+package org.fairsharing.owl2neo;
+
+import org.apache.commons.cli.*;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Blue/green layout of a graph store: every build goes into its own directory under <code>&lt;store&gt;.generations</code>
+ * and the store path itself is a symbolic link to the active generation, switched with an atomic rename.
+ * Readers opening the store path therefore always see a complete database, and keep the one they opened
+ * while the next generation is built next to it.
+ */
+public class StoreGenerations {
+
+    public static final String GENERATIONS_SUFFIX = ".generations";
+    public static final String GENERATION_PREFIX = "generation-";
+    public static final int DEFAULT_KEEP = 3;
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final Path store;
+    private final Path generationsDir;
+
+    public StoreGenerations(File store) {
+        this.store = store.toPath().toAbsolutePath().normalize();
+        this.generationsDir = this.store.resolveSibling(this.store.getFileName() + GENERATIONS_SUFFIX);
+    }
+
+    /**
+     * Resolves a store path through its symbolic link, so that a reader stays on the generation it opened.
+     */
+    public static File resolve(String path) throws IOException {
+        File file = new File(path);
+        return file.exists() ? file.toPath().toRealPath().toFile() : file;
+    }
+
+    public File getStore() {
+        return store.toFile();
+    }
+
+    public File getGenerationsDir() {
+        return generationsDir.toFile();
+    }
+
+    public File createGeneration() throws IOException {
+        Files.createDirectories(generationsDir);
+        // keep a free id right below every generation, for a plain store it may replace on activation
+        List<File> generations = getGenerations();
+        long last = generations.isEmpty() ? -1 : getGenerationId(generations.get(generations.size() - 1).toPath());
+        Path generation = getFreeGeneration(Math.max(System.currentTimeMillis(), last + 2), 1);
+        Files.createDirectory(generation);
+        System.out.println("createGeneration() - building new store generation in: " + generation);
+        return generation.toFile();
+    }
+
+    /**
+     * Returns the generations, oldest first.
+     */
+    public List<File> getGenerations() throws IOException {
+        if (!Files.isDirectory(generationsDir)) {
+            return new ArrayList<File>();
+        }
+        try (Stream<Path> paths = Files.list(generationsDir)) {
+            return paths.filter(p -> Files.isDirectory(p) && p.getFileName().toString().startsWith(GENERATION_PREFIX))
+                    .sorted(Comparator.comparingLong(StoreGenerations::getGenerationId))
+                    .map(Path::toFile)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Returns the active generation, or null when the store is not a link to one.
+     */
+    public File getCurrent() throws IOException {
+        if (!Files.isSymbolicLink(store)) {
+            return null;
+        }
+        return store.resolveSibling(Files.readSymbolicLink(store)).normalize().toFile();
+    }
+
+    /**
+     * Returns the first generation path not in use, starting from <code>id</code> and moving by <code>step</code>.
+     */
+    private Path getFreeGeneration(long id, int step) {
+        Path generation = generationsDir.resolve(GENERATION_PREFIX + id);
+        while (Files.exists(generation, LinkOption.NOFOLLOW_LINKS)) {
+            id += step;
+            generation = generationsDir.resolve(GENERATION_PREFIX + id);
+        }
+        return generation;
+    }
+
+    /**
+     * Atomically points the store at the given generation. A store that is still a plain directory
+     * (built before generations were used, or by a run without them) is first moved in as the generation
+     * right before the new one, so that {@link #rollback()} goes back to it. The store path is then only
+     * missing between that move and the link rename that follows it.
+     */
+    public void activate(File generation) throws IOException {
+        Path target = generation.toPath().toAbsolutePath().normalize();
+        if (!target.getParent().equals(generationsDir)) {
+            throw new IOException("Not a generation of " + store + ": " + generation);
+        }
+        Path tmpLink = store.resolveSibling(store.getFileName() + TMP_SUFFIX);
+        Files.deleteIfExists(tmpLink);
+        Files.createSymbolicLink(tmpLink, store.getParent().relativize(target));
+        if (Files.isDirectory(store, LinkOption.NOFOLLOW_LINKS)) {
+            Path legacy = getFreeGeneration(getGenerationId(target) - 1, -1);
+            System.out.println("activate() - moving existing store to: " + legacy);
+            Files.move(store, legacy, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(tmpLink, store, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("activate() - store " + store + " now points to: " + target);
+    }
+
+    /**
+     * Points the store back at the generation built before the active one.
+     */
+    public File rollback() throws IOException {
+        List<File> generations = getGenerations();
+        int index = generations.indexOf(getCurrent());
+        if (index <= 0) {
+            throw new IOException("No generation to roll back to from: " + getCurrent());
+        }
+        File previous = generations.get(index - 1);
+        activate(previous);
+        return previous;
+    }
+
+    /**
+     * Deletes the oldest generations so that at most <code>keep</code> remain. The active one is never deleted.
+     */
+    public List<File> prune(int keep) throws IOException {
+        List<File> generations = getGenerations();
+        File current = getCurrent();
+        List<File> pruned = new ArrayList<File>();
+        for (int i = 0; i < generations.size() - Math.max(keep, 1); i++) {
+            File generation = generations.get(i);
+            if (!generation.equals(current)) {
+                System.out.println("prune() - deleting store generation: " + generation);
+                FileUtils.deleteDirectory(generation);
+                pruned.add(generation);
+            }
+        }
+        return pruned;
+    }
+
+    private static long getGenerationId(Path generation) {
+        try {
+            return Long.parseLong(generation.getFileName().toString().substring(GENERATION_PREFIX.length()));
+        }
+        catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    protected static Options getOptions() {
+        Option dbPath = new Option("d", "db-path", true, "The local location of the database");
+        dbPath.setRequired(false);
+        Options options = new Options();
+        options.addOption(dbPath);
+        Option rollback = new Option("r", "rollback", false, "Point the database back at the previous generation");
+        rollback.setRequired(false);
+        options.addOption(rollback);
+        Option keep = new Option("k", "keep-generations", true, "Delete the oldest generations so that this many remain");
+        keep.setRequired(false);
+        options.addOption(keep);
+        return options;
+    }
+
+    public static void main(String[] args) {
+
+        CommandLine cmd = Utils.parseCommandLine(getOptions(), args);
+        String graphDbPath = cmd.getOptionValue("d", Owl2Neo4jLoader.GRAPH_DB_PATH);
+        StoreGenerations storeGenerations = new StoreGenerations(new File(graphDbPath));
+
+        try {
+            if (cmd.hasOption("r")) {
+                storeGenerations.rollback();
+            }
+            if (cmd.hasOption("k")) {
+                storeGenerations.prune(Integer.parseInt(cmd.getOptionValue("k")));
+            }
+            File current = storeGenerations.getCurrent();
+            for (File generation : storeGenerations.getGenerations()) {
+                System.out.println((generation.equals(current) ? "* " : "  ") + generation);
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Exception caught: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(Utils.ERR_STATUS);
+        }
+        System.out.println("Exiting with success...");
+        System.exit(Utils.OK_STATUS);
+
+    }
+
+}
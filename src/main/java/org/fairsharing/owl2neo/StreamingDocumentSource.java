@@ -0,0 +1,198 @@
+package org.fairsharing.owl2neo;
+
+import com.github.luben.zstd.ZstdInputStream;
+import org.apache.commons.io.input.CountingInputStream;
+import org.semanticweb.owlapi.formats.*;
+import org.semanticweb.owlapi.io.OWLOntologyDocumentSourceBase;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLDocumentFormat;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Ontology document source that streams a local file or a URL (http, https, ftp, file...) straight into the parser,
+ * decompressing <code>.gz</code> and <code>.zst</code> documents on the fly behind large read-ahead buffers.
+ * Unlike OWLAPI's stream sources it never holds the whole document in memory: each parser attempt reopens the stream.
+ * The compressed and uncompressed bytes read are counted across attempts. Remote documents are requested like OWLAPI
+ * does for IRIs: with connect and read timeouts, an Accept header listing the ontology syntaxes, and redirects followed
+ * even across protocols (http to https), which {@link HttpURLConnection} does not do by itself.
+ */
+public class StreamingDocumentSource extends OWLOntologyDocumentSourceBase {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    public static final int DEFAULT_TIMEOUT_MS = 20000;
+    public static final int MAX_REDIRECTS = 5;
+    public static final String ACCEPT = "application/rdf+xml, application/owl+xml;q=0.9, text/turtle;q=0.8, "
+            + "text/owl-functional;q=0.7, text/owl-manchester;q=0.7, application/xml;q=0.5, */*;q=0.1";
+
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final String ZSTD_EXTENSION = ".zst";
+
+    private final String location;
+    private final int bufferSize;
+    private final boolean compressed;
+    private int timeoutMs = DEFAULT_TIMEOUT_MS;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong uncompressedBytesRead = new AtomicLong();
+
+    public StreamingDocumentSource(String location) {
+        this(location, DEFAULT_BUFFER_SIZE);
+    }
+
+    public StreamingDocumentSource(String location, int bufferSize) {
+        super(getDocumentIRI(location), guessFormat(location), null);
+        this.location = location;
+        this.bufferSize = bufferSize;
+        this.compressed = !stripCompression(location).equals(location.toLowerCase());
+    }
+
+    public static boolean isRemote(String location) {
+        return location.matches("^[a-zA-Z][a-zA-Z0-9+.-]+:/.*");
+    }
+
+    private static IRI getDocumentIRI(String location) {
+        return isRemote(location) ? IRI.create(location) : IRI.create(new File(location).getAbsoluteFile());
+    }
+
+    private static String stripCompression(String location) {
+        String path = location.toLowerCase();
+        if (path.endsWith(GZIP_EXTENSION)) {
+            return path.substring(0, path.length() - GZIP_EXTENSION.length());
+        }
+        if (path.endsWith(ZSTD_EXTENSION)) {
+            return path.substring(0, path.length() - ZSTD_EXTENSION.length());
+        }
+        return path;
+    }
+
+    /**
+     * Only extensions that name a single syntax give a format hint, <code>.owl</code> documents are left to the parsers to sort out.
+     */
+    private static OWLDocumentFormat guessFormat(String location) {
+        String path = stripCompression(location);
+        if (path.endsWith(".rdf")) return new RDFXMLDocumentFormat();
+        if (path.endsWith(".ttl")) return new TurtleDocumentFormat();
+        if (path.endsWith(".obo")) return new OBODocumentFormat();
+        if (path.endsWith(".ofn")) return new FunctionalSyntaxDocumentFormat();
+        if (path.endsWith(".omn")) return new ManchesterSyntaxDocumentFormat();
+        if (path.endsWith(".owx")) return new OWLXMLDocumentFormat();
+        return null;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Bytes handed to the parser: the same as {@link #getBytesRead()} for a document that is not compressed.
+     */
+    public long getUncompressedBytesRead() {
+        return compressed ? uncompressedBytesRead.get() : bytesRead.get();
+    }
+
+    public int getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    /**
+     * Sets the connect and read timeouts of remote documents.
+     */
+    public void setTimeoutMs(int timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public Optional<InputStream> getInputStream() {
+        try {
+            return Optional.of(openStream());
+        }
+        catch (IOException e) {
+            System.err.println("Could not open " + location + ": " + e.getMessage());
+            failedOnStreams.set(true);
+            return Optional.empty();
+        }
+    }
+
+    protected InputStream openStream() throws IOException {
+        InputStream raw = isRemote(location) ? openRemoteStream() : new FileInputStream(location);
+        InputStream in = new CountingStream(new BufferedInputStream(raw, bufferSize), bytesRead);
+        String path = location.toLowerCase();
+        if (path.endsWith(GZIP_EXTENSION)) {
+            in = new GZIPInputStream(in, bufferSize);
+        }
+        else if (path.endsWith(ZSTD_EXTENSION)) {
+            in = new ZstdInputStream(in);
+        }
+        else {
+            return in;
+        }
+        return new CountingStream(new BufferedInputStream(in, bufferSize), uncompressedBytesRead);
+    }
+
+    protected InputStream openRemoteStream() throws IOException {
+        URL url = new URL(location);
+        for (int redirects = 0; ; redirects++) {
+            URLConnection connection = url.openConnection();
+            connection.setConnectTimeout(timeoutMs);
+            connection.setReadTimeout(timeoutMs);
+            connection.setRequestProperty("Accept", ACCEPT);
+            if (!(connection instanceof HttpURLConnection)) {
+                return connection.getInputStream();
+            }
+            HttpURLConnection http = (HttpURLConnection) connection;
+            http.setInstanceFollowRedirects(false);
+            int status = http.getResponseCode();
+            if (status < 300 || status >= 400 || status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return http.getInputStream();
+            }
+            String target = http.getHeaderField("Location");
+            http.disconnect();
+            if (target == null || redirects >= MAX_REDIRECTS) {
+                throw new IOException("Could not follow redirect " + status + " from " + url);
+            }
+            url = new URL(url, target);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return location;
+    }
+
+    /**
+     * Adds the bytes it reads to a shared counter, so that the count survives the stream being closed and reopened.
+     */
+    private static class CountingStream extends CountingInputStream {
+
+        private final AtomicLong counter;
+
+        CountingStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        protected synchronized void afterRead(int n) {
+            super.afterRead(n);
+            if (n > 0) {
+                counter.addAndGet(n);
+            }
+        }
+
+    }
+
+}
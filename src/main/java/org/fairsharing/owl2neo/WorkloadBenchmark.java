@@ -0,0 +1,431 @@
+package org.fairsharing.owl2neo;
+
+import org.neo4j.graphdb.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replays a workload of parameterised Cypher queries from several threads against the embedded store and
+ * reports throughput and latency percentiles, first from cold then after a page-cache warm-up.
+ * Each workload line reads <code>name | weight | cypher</code>; every <code>$param</code> gets a random value
+ * of the node property with the same name, taken from a sample of the nodes with the benchmark label, and every
+ * <code>{label}</code> is replaced by that label, so that lookups go through its iri constraint index. Sampling reads the store too,
+ * so the first run is only cold when the store was opened just before it and the parameters were sampled
+ * in an earlier session, see {@link #sampleParameters()}. The operating system file cache is never dropped.
+ */
+public class WorkloadBenchmark {
+
+    public static final String DEFAULT_WORKLOAD = "/workload.txt";
+    public static final int DEFAULT_THREADS = 4;
+    public static final int DEFAULT_OPERATIONS = 10000;
+    public static final int DEFAULT_SAMPLE_SIZE = 10000;
+    public static final String DEFAULT_LABEL = "DOMAIN";
+    public static final String LABEL_PLACEHOLDER = "{label}";
+
+    private static final Pattern PARAMETER = Pattern.compile("\\$(\\w+)");
+
+    private final GraphDatabaseService graphDb;
+    private final List<WorkloadQuery> queries;
+    private final Map<String, List<Object>> parameterPools;
+    private int threads = DEFAULT_THREADS;
+    private int operations = DEFAULT_OPERATIONS;
+    private int sampleSize = DEFAULT_SAMPLE_SIZE;
+    private String label = DEFAULT_LABEL;
+
+    public WorkloadBenchmark(GraphDatabaseService graphDb, List<WorkloadQuery> queries) {
+        this(graphDb, queries, Collections.<String, List<Object>>emptyMap());
+    }
+
+    /**
+     * Creates a benchmark drawing its parameter values from pools sampled beforehand by {@link #sampleParameters()}.
+     */
+    public WorkloadBenchmark(GraphDatabaseService graphDb, List<WorkloadQuery> queries, Map<String, List<Object>> parameterPools) {
+        if (queries.isEmpty()) {
+            throw new IllegalArgumentException("The workload has no queries");
+        }
+        this.graphDb = graphDb;
+        this.queries = queries;
+        this.parameterPools = new HashMap<String, List<Object>>(parameterPools);
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setOperations(int operations) {
+        this.operations = operations;
+    }
+
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Sets the label substituted for {@link #LABEL_PLACEHOLDER}, parameters are sampled from the nodes carrying it.
+     * Must be set before the parameters are sampled.
+     */
+    public void setLabel(String label) {
+        if (label == null || label.trim().isEmpty()) {
+            throw new IllegalArgumentException("The benchmark label cannot be empty");
+        }
+        this.label = label.trim();
+    }
+
+    private String getQuotedLabel() {
+        return "`" + label.replace("`", "``") + "`";
+    }
+
+    /**
+     * Reads a workload file, or the default workload when the path is null.
+     */
+    public static List<WorkloadQuery> loadWorkload(String path) throws IOException {
+        InputStream in = path == null ? WorkloadBenchmark.class.getResourceAsStream(DEFAULT_WORKLOAD) : new FileInputStream(path);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return parseWorkload(reader);
+        }
+    }
+
+    public static List<WorkloadQuery> parseWorkload(BufferedReader reader) throws IOException {
+        List<WorkloadQuery> queries = new ArrayList<WorkloadQuery>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\|", 3);
+            if (fields.length != 3) {
+                throw new IOException("Workload line is not 'name | weight | cypher': " + line);
+            }
+            queries.add(new WorkloadQuery(fields[0].trim(), Integer.parseInt(fields[1].trim()), fields[2].trim()));
+        }
+        return queries;
+    }
+
+    /**
+     * Samples values for every parameter of the workload from the graph, once.
+     * Pass the result to a benchmark on a freshly opened store to keep sampling out of its cold run.
+     */
+    public Map<String, List<Object>> sampleParameters() {
+        for (WorkloadQuery query : queries) {
+            for (String name : query.getParameters()) {
+                getParameterPool(name);
+            }
+        }
+        return Collections.unmodifiableMap(parameterPools);
+    }
+
+    /**
+     * Runs the workload once from cold, then once more after {@link #warmUp()}.
+     */
+    public List<Report> runColdAndWarm() throws InterruptedException {
+        List<Report> reports = new ArrayList<Report>();
+        reports.add(run("cold"));
+        warmUp();
+        reports.add(run("warm"));
+        return reports;
+    }
+
+    /**
+     * Reads every node and relationship with their properties, so that the whole store ends up in the page cache.
+     */
+    public void warmUp() {
+        long start = System.nanoTime();
+        long nodes = 0, relationships = 0;
+        try (Transaction tx = graphDb.beginTx()) {
+            for (Node node : graphDb.getAllNodes()) {
+                node.getAllProperties();
+                nodes++;
+            }
+            for (Relationship relationship : graphDb.getAllRelationships()) {
+                relationship.getAllProperties();
+                relationships++;
+            }
+            tx.success();
+        }
+        System.out.println("warmUp() - read " + nodes + " nodes and " + relationships + " relationships in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    public Report run(String phase) throws InterruptedException {
+        List<WorkloadQuery> queries = getRunnableQueries();
+        int totalWeight = 0;
+        for (WorkloadQuery query : queries) {
+            totalWeight += query.getWeight();
+        }
+        final int weights = totalWeight;
+
+        Map<String, List<Long>> latencies = new ConcurrentHashMap<String, List<Long>>();
+        for (WorkloadQuery query : queries) {
+            latencies.put(query.getName(), Collections.synchronizedList(new ArrayList<Long>()));
+        }
+        AtomicInteger remaining = new AtomicInteger(operations);
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                Random random = ThreadLocalRandom.current();
+                Map<String, List<Long>> local = new HashMap<String, List<Long>>();
+                while (remaining.getAndDecrement() > 0) {
+                    WorkloadQuery query = pick(queries, random, weights);
+                String cypher = query.getCypher().replace(LABEL_PLACEHOLDER, getQuotedLabel());
+                    Map<String, Object> parameters = new HashMap<String, Object>();
+                    for (String name : query.getParameters()) {
+                        List<Object> pool = parameterPools.get(name);
+                        parameters.put(name, pool.get(random.nextInt(pool.size())));
+                    }
+                    long queryStart = System.nanoTime();
+                    try (Transaction tx = graphDb.beginTx()) {
+                        Result result = graphDb.execute(cypher, parameters);
+                        while (result.hasNext()) {
+                            result.next();
+                        }
+                        tx.success();
+                        local.computeIfAbsent(query.getName(), k -> new ArrayList<Long>()).add(System.nanoTime() - queryStart);
+                    }
+                    catch (Exception e) {
+                        if (errors.getAndIncrement() == 0) {
+                            System.err.println("Exception caught in query " + query.getName() + ": " + e.getMessage());
+                        }
+                    }
+                }
+                local.forEach((name, values) -> latencies.get(name).addAll(values));
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        Report report = new Report(phase, threads, elapsed, errors.get());
+        List<Long> all = new ArrayList<Long>();
+        for (WorkloadQuery query : queries) {
+            List<Long> values = latencies.get(query.getName());
+            report.addStats(new LatencyStats(query.getName(), values));
+            all.addAll(values);
+        }
+        report.addStats(new LatencyStats("all", all));
+        return report;
+    }
+
+    private static WorkloadQuery pick(List<WorkloadQuery> queries, Random random, int totalWeight) {
+        int value = random.nextInt(totalWeight);
+        for (WorkloadQuery query : queries) {
+            value -= query.getWeight();
+            if (value < 0) {
+                return query;
+            }
+        }
+        return queries.get(queries.size() - 1);
+    }
+
+    /**
+     * Returns the queries for which every parameter has sample values in the graph, the others are skipped.
+     */
+    private List<WorkloadQuery> getRunnableQueries() {
+        List<WorkloadQuery> runnable = new ArrayList<WorkloadQuery>();
+        for (WorkloadQuery query : queries) {
+            boolean hasValues = true;
+            for (String name : query.getParameters()) {
+                hasValues &= !getParameterPool(name).isEmpty();
+            }
+            if (hasValues) {
+                runnable.add(query);
+            }
+            else {
+                System.out.println("run() - skipping query " + query.getName() + ", no value found in the graph for its parameters");
+            }
+        }
+        if (runnable.isEmpty()) {
+            throw new IllegalStateException("No query of the workload can run against this graph");
+        }
+        return runnable;
+    }
+
+    private List<Object> getParameterPool(String name) {
+        List<Object> pool = parameterPools.get(name);
+        if (pool != null) {
+            return pool;
+        }
+        pool = new ArrayList<Object>();
+        try (Transaction tx = graphDb.beginTx()) {
+            Result result = graphDb.execute("MATCH (n:" + getQuotedLabel() + ") WHERE exists(n.`" + name + "`) RETURN n.`" + name + "` AS value LIMIT $limit",
+                    Collections.<String, Object>singletonMap("limit", sampleSize));
+            while (result.hasNext()) {
+                Object value = result.next().get("value");
+                if (value instanceof String[]) {
+                    pool.addAll(Arrays.asList((String[]) value));
+                }
+                else if (value instanceof List) {
+                    pool.addAll((List<?>) value);
+                }
+                else {
+                    pool.add(value);
+                }
+            }
+            tx.success();
+        }
+        parameterPools.put(name, pool);
+        return pool;
+    }
+
+    public static class WorkloadQuery {
+
+        private final String name;
+        private final int weight;
+        private final String cypher;
+        private final Set<String> parameters = new LinkedHashSet<String>();
+
+        public WorkloadQuery(String name, int weight, String cypher) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Weight of query " + name + " must be positive: " + weight);
+            }
+            this.name = name;
+            this.weight = weight;
+            this.cypher = cypher;
+            Matcher matcher = PARAMETER.matcher(cypher);
+            while (matcher.find()) {
+                parameters.add(matcher.group(1));
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public String getCypher() {
+            return cypher;
+        }
+
+        public Set<String> getParameters() {
+            return parameters;
+        }
+
+    }
+
+    public static class LatencyStats {
+
+        private final String name;
+        private final int count;
+        private final long p50, p95, p99, max;
+
+        public LatencyStats(String name, List<Long> latencies) {
+            long[] sorted = new long[latencies.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = latencies.get(i);
+            }
+            Arrays.sort(sorted);
+            this.name = name;
+            this.count = sorted.length;
+            this.p50 = percentile(sorted, 50);
+            this.p95 = percentile(sorted, 95);
+            this.p99 = percentile(sorted, 99);
+            this.max = count == 0 ? 0 : sorted[count - 1];
+        }
+
+        /**
+         * Nearest-rank percentile, in nanoseconds.
+         */
+        protected static long percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(rank, 1) - 1];
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP95() {
+            return p95;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-12s %8d %10.3f %10.3f %10.3f %10.3f", name, count, p50 / 1e6, p95 / 1e6, p99 / 1e6, max / 1e6);
+        }
+
+    }
+
+    public static class Report {
+
+        private final String phase;
+        private final int threads;
+        private final long elapsedNanos;
+        private final int errors;
+        private final List<LatencyStats> stats = new ArrayList<LatencyStats>();
+
+        public Report(String phase, int threads, long elapsedNanos, int errors) {
+            this.phase = phase;
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+            this.errors = errors;
+        }
+
+        void addStats(LatencyStats latencyStats) {
+            stats.add(latencyStats);
+        }
+
+        public String getPhase() {
+            return phase;
+        }
+
+        public int getErrors() {
+            return errors;
+        }
+
+        public List<LatencyStats> getStats() {
+            return stats;
+        }
+
+        public LatencyStats getTotal() {
+            return stats.get(stats.size() - 1);
+        }
+
+        public double getThroughput() {
+            return getTotal().getCount() / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%s run: %d threads, %d queries in %d ms, %.1f queries/s, %d errors%n",
+                    phase, threads, getTotal().getCount(), elapsedNanos / 1000000, getThroughput(), errors));
+            sb.append(String.format("%-12s %8s %10s %10s %10s %10s%n", "query", "count", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+            for (LatencyStats latencyStats : stats) {
+                sb.append(latencyStats).append(System.lineSeparator());
+            }
+            return sb.toString();
+        }
+
+    }
+
+}
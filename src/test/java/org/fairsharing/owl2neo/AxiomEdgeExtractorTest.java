@@ -0,0 +1,87 @@
+package org.fairsharing.owl2neo;
+
+import org.junit.*;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AxiomEdgeExtractorTest {
+
+    private static final String BASE = "http://www.fairsharing.org/ontology/test#";
+
+    private OWLOntology ontology;
+    private OWLDataFactory factory;
+    private OWLClass child, parent, whole, root, alias;
+    private OWLObjectProperty partOf;
+
+    @Before
+    public void setUp() throws Exception {
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        factory = manager.getOWLDataFactory();
+        ontology = manager.createOntology(IRI.create("http://www.fairsharing.org/ontology/test"));
+        child = factory.getOWLClass(IRI.create(BASE + "Child"));
+        parent = factory.getOWLClass(IRI.create(BASE + "Parent"));
+        whole = factory.getOWLClass(IRI.create(BASE + "Whole"));
+        root = factory.getOWLClass(IRI.create(BASE + "Root"));
+        alias = factory.getOWLClass(IRI.create(BASE + "Alias"));
+        partOf = factory.getOWLObjectProperty(IRI.create("http://purl.obolibrary.org/obo/BFO_0000050"));
+        manager.addAxiom(ontology, factory.getOWLDeclarationAxiom(root));
+        manager.addAxiom(ontology, factory.getOWLSubClassOfAxiom(child, parent));
+        manager.addAxiom(ontology, factory.getOWLSubClassOfAxiom(parent, root));
+        manager.addAxiom(ontology, factory.getOWLSubClassOfAxiom(whole, root));
+        manager.addAxiom(ontology, factory.getOWLSubClassOfAxiom(child, factory.getOWLObjectSomeValuesFrom(partOf, whole)));
+        manager.addAxiom(ontology, factory.getOWLEquivalentClassesAxiom(alias, parent));
+        manager.addAxiom(ontology, factory.getOWLAnnotationAssertionAxiom(factory.getRDFSLabel(), partOf.getIRI(),
+                factory.getOWLLiteral("part of")));
+    }
+
+    private List<Edge> extract(int capacity) {
+        List<Edge> edges = new ArrayList<Edge>();
+        EdgeBuffer buffer = new EdgeBuffer(capacity, edges::addAll);
+        new AxiomEdgeExtractor(ontology, factory, buffer, Owl2Neo4jLoader.PART_OF, Owl2Neo4jLoader.IS_A).extract();
+        Assert.assertEquals(edges.size(), buffer.getTotal());
+        return edges;
+    }
+
+    @Test
+    public void extractSubClassAndRestrictionEdges() throws Exception {
+        List<Edge> edges = extract(EdgeBuffer.DEFAULT_CAPACITY);
+        // Child -> Parent, Child -> Whole, Parent -> Root, Whole -> Root, Root -> Thing, Alias -> Root
+        Assert.assertEquals(6, edges.size());
+        Assert.assertTrue(edges.stream().anyMatch(e -> e.getChild().equals(child) && e.getParent().equals(parent)
+                && e.getType().equals(Owl2Neo4jLoader.PART_OF) && e.getProperty() == null));
+        Assert.assertTrue(edges.stream().anyMatch(e -> e.getChild().equals(child) && e.getParent().equals(whole)
+                && e.getType().equals(Owl2Neo4jLoader.PART_OF + AxiomEdgeExtractor.RESTRICTION_SUFFIX)
+                && partOf.equals(e.getProperty())));
+        Assert.assertTrue(edges.stream().anyMatch(e -> e.getChild().equals(root) && e.getParent().isOWLThing()
+                && e.getType().equals(Owl2Neo4jLoader.IS_A)));
+    }
+
+    @Test
+    public void extractGivesNamedEquivalentsTheSameParents() throws Exception {
+        List<Edge> edges = extract(EdgeBuffer.DEFAULT_CAPACITY);
+        // Alias is placed under Root, like Parent, without any edge between the two equivalents
+        Assert.assertTrue(edges.stream().anyMatch(e -> e.getChild().equals(alias) && e.getParent().equals(root)
+                && e.getType().equals(Owl2Neo4jLoader.PART_OF)));
+        Assert.assertEquals(1, edges.stream().filter(e -> e.getChild().equals(alias)).count());
+        Assert.assertEquals(1, edges.stream().filter(e -> e.getChild().equals(parent)).count());
+        Assert.assertFalse(edges.stream().anyMatch(e -> e.getChild().equals(parent) && e.getParent().equals(alias)));
+    }
+
+    @Test
+    public void extractFlushesInBatches() throws Exception {
+        Assert.assertEquals(6, extract(2).size());
+    }
+
+    @Test
+    public void toCamelCase() throws Exception {
+        Assert.assertEquals("partOf", AxiomEdgeExtractor.toCamelCase("part of"));
+        Assert.assertEquals("hasParticipant", AxiomEdgeExtractor.toCamelCase(" has_participant "));
+    }
+
+}
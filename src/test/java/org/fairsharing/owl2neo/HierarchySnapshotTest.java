@@ -0,0 +1,107 @@
+package org.fairsharing.owl2neo;
+
+import org.junit.*;
+
+import org.apache.commons.io.FileUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class HierarchySnapshotTest {
+
+    public static final String TEST_GRAPH_DB_PATH = "var/snapshot-test.db";
+    public static final String TEST_SNAPSHOT_PATH = "var/snapshot-test";
+
+    private static final String LABEL = "DISCIPLINE";
+
+    private GraphDatabaseService graphDb;
+
+    @Before
+    public void setUp() throws Exception {
+        SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator(200, 3, 4);
+        generator.setSynonymsPerClass(2);
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        OWLOntology ontology = generator.generate(manager);
+        graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(new File(TEST_GRAPH_DB_PATH));
+        Owl2Neo4jLoader loader = new Owl2Neo4jLoader(graphDb, ontology, manager.getOWLDataFactory());
+        loader.setLoadMode(Owl2Neo4jLoader.LOAD_MODE_AXIOMS);
+        loader.loadAlternativeTermsFromOntology();
+        loader.loadSynonymsFromOntology();
+        loader.importOntology(LABEL);
+    }
+
+    @After
+    public void tearDown() {
+        graphDb.shutdown();
+        try {
+            FileUtils.deleteDirectory(new File(TEST_GRAPH_DB_PATH));
+            FileUtils.deleteDirectory(new File(TEST_SNAPSHOT_PATH));
+        }
+        catch (IOException err) {
+            System.err.println("Could not delete directories: " + TEST_GRAPH_DB_PATH + ", " + TEST_SNAPSHOT_PATH);
+        }
+    }
+
+    private File export() throws Exception {
+        try (Transaction tx = graphDb.beginTx()) {
+            File file = HierarchySnapshot.export(graphDb, LABEL, new File(TEST_SNAPSHOT_PATH));
+            tx.success();
+            return file;
+        }
+    }
+
+    @Test
+    public void exportAndOpen() throws Exception {
+        HierarchySnapshot snapshot = HierarchySnapshot.open(export());
+        Assert.assertEquals(LABEL, snapshot.getLabel());
+        Assert.assertEquals(200, snapshot.size());
+        Assert.assertEquals(4, snapshot.getRoots().length);
+
+        int children = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            HierarchySnapshot.SnapshotNode node = snapshot.getNode(i);
+            Assert.assertEquals(2, node.getSynonyms().length);
+            Assert.assertTrue(node.getDisplayName().startsWith("synthetic class "));
+            children += node.getChildren().length;
+        }
+        Assert.assertEquals(196, children);
+
+        String rootIri = SyntheticOntologyGenerator.BASE_IRI + "#SYN_0";
+        int root = snapshot.indexOf(rootIri);
+        Assert.assertEquals(rootIri, snapshot.getNode(root).getIri());
+        Assert.assertEquals(4, snapshot.getNode(root).getChildren().length);
+        Assert.assertEquals(-1, snapshot.indexOf("http://www.fairsharing.org/ontology/none"));
+    }
+
+    @Test
+    public void exportReplacesPreviousSnapshot() throws Exception {
+        HierarchySnapshot first = HierarchySnapshot.open(export());
+        HierarchySnapshot second = HierarchySnapshot.open(export());
+        Assert.assertTrue(second.getCreatedAt() >= first.getCreatedAt());
+        Assert.assertEquals(first.size(), second.size());
+        Assert.assertEquals(1, new File(TEST_SNAPSHOT_PATH).list().length);
+    }
+
+    @Test
+    public void publishStagedSnapshot() throws Exception {
+        File directory = new File(TEST_SNAPSHOT_PATH);
+        File staging = HierarchySnapshot.createStagingDirectory(directory);
+        try (Transaction tx = graphDb.beginTx()) {
+            HierarchySnapshot.export(graphDb, LABEL, staging);
+            tx.success();
+        }
+        Assert.assertFalse(HierarchySnapshot.getSnapshotFile(directory, LABEL).exists());
+        HierarchySnapshot.publish(staging, directory);
+        Assert.assertFalse(staging.exists());
+        Assert.assertEquals(200, HierarchySnapshot.open(HierarchySnapshot.getSnapshotFile(directory, LABEL)).size());
+    }
+
+}
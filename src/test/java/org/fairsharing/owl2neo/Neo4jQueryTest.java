@@ -0,0 +1,74 @@
+package org.fairsharing.owl2neo;
+
+import org.junit.*;
+
+import org.apache.commons.io.FileUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class Neo4jQueryTest {
+
+    public static final String TEST_GRAPH_DB_PATH = "var/query-test.db";
+
+    private static final String QUERY = "MATCH (n:DOMAIN {iri: $iri}) RETURN n";
+    private static final Map<String, Object> PARAMETERS = Collections.<String, Object>singletonMap("iri", "http://www.fairsharing.org/ontology/test#A");
+
+    private GraphDatabaseService graphDb;
+    private Neo4jQuery neo4jQuery;
+
+    @Before
+    public void setUp() throws Exception {
+        graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(new File(TEST_GRAPH_DB_PATH));
+        try (Transaction tx = graphDb.beginTx()) {
+            Node node = graphDb.createNode(Label.label("DOMAIN"));
+            node.setProperty("iri", PARAMETERS.get("iri"));
+            node.setProperty("name", "A");
+            Owl2Neo4jLoader.stampGeneration(graphDb);
+            tx.success();
+        }
+        neo4jQuery = new Neo4jQuery(graphDb, new QueryResultCache(10));
+        neo4jQuery.setGenerationCheckIntervalMs(0);
+    }
+
+    @After
+    public void tearDown() {
+        graphDb.shutdown();
+        try {
+            FileUtils.deleteDirectory(new File(TEST_GRAPH_DB_PATH));
+        }
+        catch (IOException err) {
+            System.err.println("Could not delete directory: " + TEST_GRAPH_DB_PATH);
+        }
+    }
+
+    @Test
+    public void executeIsCachedUntilNextGeneration() throws Exception {
+        List<Map<String, Object>> rows = neo4jQuery.execute(QUERY, PARAMETERS);
+        Assert.assertEquals(1, rows.size());
+        Assert.assertEquals("A", ((Map) rows.get(0).get("n")).get("name"));
+        neo4jQuery.execute(QUERY, PARAMETERS);
+        Assert.assertEquals(1, neo4jQuery.getCache().getHits());
+
+        try (Transaction tx = graphDb.beginTx()) {
+            graphDb.findNode(Label.label("DOMAIN"), "iri", PARAMETERS.get("iri")).setProperty("name", "B");
+            Owl2Neo4jLoader.stampGeneration(graphDb);
+            tx.success();
+        }
+        rows = neo4jQuery.execute(QUERY, PARAMETERS);
+        Assert.assertEquals("B", ((Map) rows.get(0).get("n")).get("name"));
+        Assert.assertEquals(2, neo4jQuery.getCache().getMisses());
+        Assert.assertEquals(1, neo4jQuery.getCache().getInvalidations());
+    }
+
+}
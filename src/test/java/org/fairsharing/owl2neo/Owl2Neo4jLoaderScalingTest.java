@@ -0,0 +1,204 @@
+package org.fairsharing.owl2neo;
+
+import org.junit.*;
+
+import org.apache.commons.io.FileUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Loads synthetic ontologies of growing size in every load mode and records wall time, peak heap
+ * and nodes per second. Each ontology is written to a file and parsed back through {@link StreamingDocumentSource},
+ * as <code>Owl2Neo4jLoader.main</code> does, and the parse time is reported separately from the import. The default run is small; pass e.g. <code>-Dowl2neo.scaling.sizes=10000,100000,1000000</code>
+ * to measure production-sized inputs.
+ */
+public class Owl2Neo4jLoaderScalingTest {
+
+    public static final String SCALING_GRAPH_DB_PATH = "var/scaling-test.db";
+    public static final String SCALING_ONTOLOGY_PATH = "var/scaling-test.owl";
+
+    private static final String LABEL = "DOMAIN";
+    private static final String CSV_HEADER = "mode,classes,depth,branchingFactor,synonyms,alternativeTerms,inSubsetDensity,restrictionDensity,nodes,parseTimeMs,wallTimeMs,peakHeapMb,nodesPerSecond";
+
+    private static final List<Integer> SIZES = parseSizes(System.getProperty("owl2neo.scaling.sizes", "1000"));
+    private static final List<String> MODES = Arrays.asList(System.getProperty("owl2neo.scaling.modes",
+            Owl2Neo4jLoader.LOAD_MODE_REASONER + "," + Owl2Neo4jLoader.LOAD_MODE_AXIOMS).toUpperCase().split(","));
+    private static final int DEPTH = Integer.getInteger("owl2neo.scaling.depth", 6);
+    private static final int BRANCHING_FACTOR = Integer.getInteger("owl2neo.scaling.branching", 8);
+    private static final int SYNONYMS = Integer.getInteger("owl2neo.scaling.synonyms", 2);
+    private static final int ALTERNATIVE_TERMS = Integer.getInteger("owl2neo.scaling.alternativeTerms", 1);
+    private static final double IN_SUBSET_DENSITY = Double.parseDouble(System.getProperty("owl2neo.scaling.inSubsetDensity", "0.1"));
+    private static final double RESTRICTION_DENSITY = Double.parseDouble(System.getProperty("owl2neo.scaling.restrictionDensity", "0.1"));
+    private static final String REPORT_PATH = System.getProperty("owl2neo.scaling.report", "build/reports/scaling/scaling.csv");
+
+    private static List<String> report = new ArrayList<String>();
+
+    @AfterClass
+    public static void writeReport() throws IOException {
+        if (report.isEmpty()) {
+            return;
+        }
+        List<String> lines = new ArrayList<String>();
+        lines.add(CSV_HEADER);
+        lines.addAll(report);
+        FileUtils.writeLines(new File(REPORT_PATH), StandardCharsets.UTF_8.name(), lines);
+        System.out.println("Scaling report written to: " + REPORT_PATH);
+        lines.forEach(System.out::println);
+    }
+
+    @After
+    public void tearDown() {
+        try {
+            FileUtils.deleteDirectory(new File(SCALING_GRAPH_DB_PATH));
+            FileUtils.deleteQuietly(new File(SCALING_ONTOLOGY_PATH));
+        }
+        catch (IOException err) {
+            System.err.println("Could not delete directory: " + SCALING_GRAPH_DB_PATH);
+        }
+    }
+
+    @Test
+    public void generateHierarchyShape() throws Exception {
+        SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator(100, 3, 4);
+        generator.setSynonymsPerClass(2);
+        generator.setAlternativeTermsPerClass(1);
+        generator.setInSubsetDensity(1.0);
+        OWLOntology ontology = generator.generate();
+        Assert.assertEquals(100, ontology.classesInSignature().count());
+        // 4 roots, everything else has exactly one named parent
+        Assert.assertEquals(96, ontology.axioms(AxiomType.SUBCLASS_OF).count());
+        // label, 2 synonyms, 1 alternative term and inSubset on every class
+        Assert.assertEquals(500, ontology.axioms(AxiomType.ANNOTATION_ASSERTION).count());
+        Assert.assertEquals(3, maxDepth(ontology));
+    }
+
+    @Test
+    public void generateRestrictions() throws Exception {
+        SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator(100, 3, 4);
+        generator.setRestrictionDensity(1.0);
+        OWLOntology ontology = generator.generate();
+        // every class but the first also gets a part of restriction to an earlier class
+        Assert.assertEquals(96 + 99, ontology.axioms(AxiomType.SUBCLASS_OF).count());
+        Assert.assertEquals(99, ontology.axioms(AxiomType.SUBCLASS_OF)
+                .filter(axiom -> axiom.getSuperClass().getClassExpressionType() == ClassExpressionType.OBJECT_SOME_VALUES_FROM)
+                .count());
+    }
+
+    @Test
+    public void importScaling() throws Exception {
+        for (String mode : MODES) {
+            for (int size : SIZES) {
+                importSynthetic(mode.trim(), size);
+                tearDown();
+            }
+        }
+    }
+
+    private void importSynthetic(String mode, int size) throws Exception {
+        SyntheticOntologyGenerator generator = new SyntheticOntologyGenerator(size, DEPTH, BRANCHING_FACTOR);
+        generator.setSynonymsPerClass(SYNONYMS);
+        generator.setAlternativeTermsPerClass(ALTERNATIVE_TERMS);
+        generator.setInSubsetDensity(IN_SUBSET_DENSITY);
+        generator.setRestrictionDensity(RESTRICTION_DENSITY);
+        File ontologyFile = new File(SCALING_ONTOLOGY_PATH);
+        generator.writeTo(generator.generate(), ontologyFile);
+
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        long parseStart = System.nanoTime();
+        OWLOntology ontology = manager.loadOntologyFromOntologyDocument(new StreamingDocumentSource(ontologyFile.getPath()));
+        long parseTimeMs = (System.nanoTime() - parseStart) / 1000000;
+
+        GraphDatabaseService graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(new File(SCALING_GRAPH_DB_PATH));
+        try {
+            Owl2Neo4jLoader loader = new Owl2Neo4jLoader(graphDb, ontology, manager.getOWLDataFactory());
+            loader.setLoadMode(mode);
+            loader.createConstraints();
+            loader.loadAlternativeTermsFromOntology();
+            loader.loadSynonymsFromOntology();
+            loader.loadInSubjectAnnotationProperty();
+            loader.loadDefinitionAnnotationProperty();
+
+            System.gc();
+            resetPeakHeap();
+            long start = System.nanoTime();
+            loader.importOntology(LABEL);
+            long wallTimeMs = (System.nanoTime() - start) / 1000000;
+            long peakHeapMb = getPeakHeap() / (1024 * 1024);
+
+            long nodes;
+            try (Transaction tx = graphDb.beginTx()) {
+                nodes = graphDb.findNodes(Label.label(LABEL)).stream().count();
+                tx.success();
+            }
+            double nodesPerSecond = nodes * 1000.0 / Math.max(wallTimeMs, 1);
+            report.add(String.format("%s,%d,%d,%d,%d,%d,%s,%s,%d,%d,%d,%d,%.1f", mode, size, DEPTH, BRANCHING_FACTOR,
+                    SYNONYMS, ALTERNATIVE_TERMS, IN_SUBSET_DENSITY, RESTRICTION_DENSITY, nodes, parseTimeMs, wallTimeMs, peakHeapMb, nodesPerSecond));
+            Assert.assertEquals(size, nodes);
+        }
+        finally {
+            graphDb.shutdown();
+        }
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static int maxDepth(OWLOntology ontology) {
+        int max = 0;
+        for (OWLClass c : (Iterable<OWLClass>) ontology.classesInSignature()::iterator) {
+            int level = 1;
+            OWLClass current = c;
+            while (true) {
+                OWLClass next = ontology.subClassAxiomsForSubClass(current)
+                        .map(ax -> ax.getSuperClass().asOWLClass()).findFirst().orElse(null);
+                if (next == null) {
+                    break;
+                }
+                current = next;
+                level++;
+            }
+            max = Math.max(max, level);
+        }
+        return max;
+    }
+
+    private static List<Integer> parseSizes(String sizes) {
+        List<Integer> res = new ArrayList<Integer>();
+        for (String size : sizes.split(",")) {
+            res.add(Integer.parseInt(size.trim()));
+        }
+        return res;
+    }
+
+}
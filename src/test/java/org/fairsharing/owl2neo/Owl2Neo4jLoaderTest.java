@@ -3,19 +3,23 @@ package org.fairsharing.owl2neo;
 import org.junit.*;
 
 import org.junit.rules.ExternalResource;
-import org.neo4j.graphdb.GraphDatabaseService;
-import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.factory.GraphDatabaseFactory;
 import org.neo4j.helpers.collection.Visitor;
 import org.semanticweb.owlapi.apibinding.OWLManager;
-import org.semanticweb.owlapi.model.OWLDataFactory;
-import org.semanticweb.owlapi.model.OWLOntology;
-import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.*;
 
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -84,6 +88,93 @@ public class Owl2Neo4jLoaderTest {
         // Assert.assertTrue(graphDb.findNodes(Label.label(label)).stream().count() > 0);
     }
 
+    @Test
+    public void importOntologyWithAxiomLinks() throws Exception {
+        String label = "DOMAIN";
+        loader.setLoadMode(Owl2Neo4jLoader.LOAD_MODE_AXIOMS);
+        loader.loadAlternativeTermsFromOntology();
+        loader.loadSynonymsFromOntology();
+        loader.loadInSubjectAnnotationProperty();
+        loader.importOntology(label);
+        try (Transaction tx = graphDb.beginTx()) {
+            Assert.assertTrue(graphDb.findNodes(Label.label(label)).stream().count() > 0);
+            Assert.assertTrue(graphDb.getAllRelationships().stream().count() > 0);
+            tx.success();
+        }
+    }
+
+    @Test
+    public void importOntologyKeepsRestrictionsOutOfHierarchy() throws Exception {
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        OWLDataFactory factory = manager.getOWLDataFactory();
+        String base = "http://www.fairsharing.org/ontology/test#";
+        OWLOntology ontology = manager.createOntology(IRI.create("http://www.fairsharing.org/ontology/test"));
+        OWLClass child = factory.getOWLClass(IRI.create(base + "Child"));
+        OWLClass parent = factory.getOWLClass(IRI.create(base + "Parent"));
+        OWLClass whole = factory.getOWLClass(IRI.create(base + "Whole"));
+        OWLObjectProperty partOf = factory.getOWLObjectProperty(IRI.create("http://purl.obolibrary.org/obo/BFO_0000050"));
+        manager.addAxiom(ontology, factory.getOWLSubClassOfAxiom(child, parent));
+        manager.addAxiom(ontology, factory.getOWLSubClassOfAxiom(child, factory.getOWLObjectSomeValuesFrom(partOf, whole)));
+        manager.addAxiom(ontology, factory.getOWLAnnotationAssertionAxiom(factory.getRDFSLabel(), partOf.getIRI(),
+                factory.getOWLLiteral("part of")));
+
+        Owl2Neo4jLoader axiomLoader = new Owl2Neo4jLoader(graphDb, ontology, factory);
+        axiomLoader.setLoadMode(Owl2Neo4jLoader.LOAD_MODE_AXIOMS);
+        axiomLoader.loadAlternativeTermsFromOntology();
+        axiomLoader.loadSynonymsFromOntology();
+        axiomLoader.importOntology("DOMAIN");
+        try (Transaction tx = graphDb.beginTx()) {
+            Node childNode = graphDb.findNode(Label.label("DOMAIN"), "iri", child.getIRI().getIRIString());
+            List<String> parents = new ArrayList<String>();
+            childNode.getRelationships(Direction.OUTGOING, RelationshipType.withName(Owl2Neo4jLoader.PART_OF))
+                    .forEach(r -> parents.add((String) r.getEndNode().getProperty("iri")));
+            Assert.assertEquals(Collections.singletonList(parent.getIRI().getIRIString()), parents);
+
+            Relationship restriction = childNode.getSingleRelationship(
+                    RelationshipType.withName(Owl2Neo4jLoader.PART_OF + AxiomEdgeExtractor.RESTRICTION_SUFFIX), Direction.OUTGOING);
+            Assert.assertEquals(whole.getIRI().getIRIString(), restriction.getEndNode().getProperty("iri"));
+            Assert.assertEquals(partOf.getIRI().getIRIString(), restriction.getProperty("iri"));
+            tx.success();
+        }
+    }
+
+    @Test
+    public void failedImportKeepsPublishedSnapshot() throws Exception {
+        File workDir = new File("var/broken-import-test");
+        File snapshotDir = new File(workDir, "snapshots");
+        File snapshot = HierarchySnapshot.getSnapshotFile(snapshotDir, "DOMAIN");
+        try {
+            FileUtils.writeStringToFile(snapshot, "last good snapshot", StandardCharsets.UTF_8);
+
+            // an IRI-valued label makes the import fail half way through
+            OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+            OWLDataFactory factory = manager.getOWLDataFactory();
+            OWLOntology ontology = manager.createOntology(IRI.create("http://www.fairsharing.org/ontology/broken"));
+            OWLClass broken = factory.getOWLClass(IRI.create("http://www.fairsharing.org/ontology/broken#Broken"));
+            manager.addAxiom(ontology, factory.getOWLDeclarationAxiom(broken));
+            manager.addAxiom(ontology, factory.getOWLAnnotationAssertionAxiom(factory.getRDFSLabel(), broken.getIRI(),
+                    IRI.create("http://www.fairsharing.org/ontology/broken#label")));
+            File owlFile = new File(workDir, "broken-drao.owl");
+            manager.saveOntology(ontology, IRI.create(owlFile.getAbsoluteFile().toURI()));
+
+            List<String> command = new ArrayList<String>();
+            command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), Owl2Neo4jLoader.class.getName(),
+                    "-o", owlFile.getPath(), "-d", new File(workDir, "graph.db").getPath(), "-s", snapshotDir.getPath(),
+                    "-m", Owl2Neo4jLoader.LOAD_MODE_AXIOMS));
+            Process process = new ProcessBuilder(command).inheritIO().start();
+            Assert.assertTrue(process.waitFor(5, TimeUnit.MINUTES));
+
+            Assert.assertEquals(Utils.ERR_STATUS, process.exitValue());
+            Assert.assertEquals("last good snapshot", FileUtils.readFileToString(snapshot, StandardCharsets.UTF_8));
+            Assert.assertArrayEquals(new String[] { snapshot.getName() }, snapshotDir.list());
+        }
+        finally {
+            FileUtils.deleteDirectory(workDir);
+        }
+    }
+
     @Test
     public void getOptions() throws Exception {
     }
@@ -0,0 +1,108 @@
+package org.fairsharing.owl2neo;
+
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class QueryResultCacheTest {
+
+    private static final String QUERY = "MATCH (n {iri: $iri}) RETURN n";
+
+    private static Map<String, Object> parameters(String iri) {
+        return Collections.<String, Object>singletonMap("iri", iri);
+    }
+
+    private static List<Map<String, Object>> rows(String name) {
+        return Collections.singletonList(Collections.<String, Object>singletonMap("name", name));
+    }
+
+    @Test
+    public void hitsAndMisses() throws Exception {
+        QueryResultCache cache = new QueryResultCache(10);
+        Assert.assertNull(cache.get(1, QUERY, parameters("a")));
+        cache.put(1, QUERY, parameters("a"), rows("a"));
+        Assert.assertEquals(rows("a"), cache.get(1, QUERY, new HashMap<String, Object>(parameters("a"))));
+        Assert.assertNull(cache.get(1, QUERY, parameters("b")));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        QueryResultCache cache = new QueryResultCache(2);
+        cache.put(1, QUERY, parameters("a"), rows("a"));
+        cache.put(1, QUERY, parameters("b"), rows("b"));
+        cache.get(1, QUERY, parameters("a"));
+        cache.put(1, QUERY, parameters("c"), rows("c"));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertNotNull(cache.get(1, QUERY, parameters("a")));
+        Assert.assertNull(cache.get(1, QUERY, parameters("b")));
+    }
+
+    @Test
+    public void invalidatesOnGenerationChange() throws Exception {
+        QueryResultCache cache = new QueryResultCache(10);
+        cache.put(1, QUERY, parameters("a"), rows("a"));
+        Assert.assertNull(cache.get(2, QUERY, parameters("a")));
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(1, cache.getInvalidations());
+        Assert.assertEquals(2, cache.getGeneration());
+    }
+
+    @Test
+    public void ignoresStaleGeneration() throws Exception {
+        QueryResultCache cache = new QueryResultCache(10);
+        cache.put(2, QUERY, parameters("a"), rows("a"));
+        // a reader that started before the import finishes late: its rows must not replace the newer ones
+        cache.put(1, QUERY, parameters("a"), rows("old a"));
+        cache.put(1, QUERY, parameters("b"), rows("old b"));
+        Assert.assertNull(cache.get(1, QUERY, parameters("a")));
+        Assert.assertEquals(2, cache.getGeneration());
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(0, cache.getInvalidations());
+        Assert.assertEquals(rows("a"), cache.get(2, QUERY, parameters("a")));
+        Assert.assertNull(cache.get(2, QUERY, parameters("b")));
+    }
+
+    @Test
+    public void cachedRowsAreFrozen() throws Exception {
+        QueryResultCache cache = new QueryResultCache(10);
+        Map<String, Object> node = new HashMap<String, Object>();
+        node.put("synonyms", new String[] { "progenitor" });
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("n", node);
+        List<Map<String, Object>> frozen = cache.put(1, QUERY, parameters("a"), Collections.singletonList(row));
+
+        // changing the rows read from the graph, or the ones handed out, leaves the cached entry intact
+        node.put("synonyms", new String[] { "changed" });
+        try {
+            frozen.get(0).put("n", "changed");
+            Assert.fail("Cached rows must be read-only");
+        }
+        catch (UnsupportedOperationException e) {
+            // expected
+        }
+        Map<?, ?> cached = (Map<?, ?>) cache.get(1, QUERY, parameters("a")).get(0).get("n");
+        Assert.assertEquals(Collections.singletonList("progenitor"), cached.get("synonyms"));
+    }
+
+    @Test
+    public void arrayParametersHit() throws Exception {
+        QueryResultCache cache = new QueryResultCache(10);
+        String query = "MATCH (n) WHERE any(s IN $synonyms WHERE s IN n.synonyms) RETURN n";
+        cache.put(1, query, Collections.<String, Object>singletonMap("synonyms", new String[] { "a", "b" }), rows("a"));
+        Assert.assertEquals(rows("a"), cache.get(1, query, Collections.<String, Object>singletonMap("synonyms", new String[] { "a", "b" })));
+        Assert.assertNull(cache.get(1, query, Collections.<String, Object>singletonMap("synonyms", new String[] { "b", "a" })));
+    }
+
+    @Test
+    public void disabledWhenEmpty() throws Exception {
+        QueryResultCache cache = new QueryResultCache(0);
+        cache.put(1, QUERY, parameters("a"), rows("a"));
+        Assert.assertNull(cache.get(1, QUERY, parameters("a")));
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.fairsharing.owl2neo;
+
+import org.junit.*;
+
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class ReasonerRaceTest {
+
+    private static final List<String> REASONERS = Arrays.asList(Owl2Neo4jLoader.HERMIT, Owl2Neo4jLoader.JFACT);
+
+    @Rule
+    public ResourceFile file = new ResourceFile("/DRAO-inferred.owl");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Owl2Neo4jLoader loader;
+    private File winnersFile;
+
+    @Before
+    public void setUp() throws Exception {
+        OWLOntologyManager manager = OWLManager.createConcurrentOWLOntologyManager();
+        OWLOntology ontology = manager.loadOntologyFromOntologyDocument(file.getFile());
+        loader = new Owl2Neo4jLoader(null, ontology, manager.getOWLDataFactory());
+        winnersFile = new File(folder.getRoot(), "winners.properties");
+    }
+
+    @Test
+    public void raceRecordsWinner() throws Exception {
+        ReasonerRace race = new ReasonerRace(loader, REASONERS, ReasonerRace.DEFAULT_TIMEOUT_MS, winnersFile);
+        OWLReasoner reasoner = race.race();
+        Assert.assertTrue(reasoner.isConsistent());
+        Assert.assertTrue(REASONERS.contains(race.getWinner()));
+
+        Properties winners = new Properties();
+        try (InputStream in = new FileInputStream(winnersFile)) {
+            winners.load(in);
+        }
+        Assert.assertEquals(race.getWinner(), winners.getProperty(ReasonerRace.getOntologyKey(loader.getOntology())));
+
+        // the recorded winner is preferred on the next run
+        ReasonerRace nextRace = new ReasonerRace(loader, REASONERS, ReasonerRace.DEFAULT_TIMEOUT_MS, winnersFile);
+        nextRace.race();
+        Assert.assertEquals(race.getWinner(), nextRace.getWinner());
+    }
+
+    @Test
+    public void resolveReasonerTypes() throws Exception {
+        Assert.assertEquals(Arrays.asList(Owl2Neo4jLoader.OPENLLET, Owl2Neo4jLoader.HERMIT),
+                ReasonerRace.resolveReasonerTypes(Arrays.asList(" pellet", "HERMIT", "openllet", "hermit ")));
+        for (List<String> names : Arrays.asList(Arrays.asList("HERMT"), Arrays.asList("HERMIT", "FACT++"), Arrays.<String>asList())) {
+            try {
+                ReasonerRace.resolveReasonerTypes(names);
+                Assert.fail("Should reject: " + names);
+            }
+            catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        try {
+            new ReasonerRace(loader, Arrays.asList("HERMT"), ReasonerRace.DEFAULT_TIMEOUT_MS, winnersFile);
+            Assert.fail("Should reject an unknown reasoner");
+        }
+        catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("HERMT"));
+        }
+    }
+
+    @Test
+    public void raceTimesOut() throws Exception {
+        ReasonerRace race = new ReasonerRace(loader, REASONERS, 1, winnersFile);
+        try {
+            race.race();
+            Assert.fail("No reasoner should classify the ontology within 1 ms");
+        }
+        catch (Exception e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("within 1 ms"));
+        }
+        Assert.assertNull(race.getWinner());
+        Assert.assertFalse(winnersFile.exists());
+    }
+
+}
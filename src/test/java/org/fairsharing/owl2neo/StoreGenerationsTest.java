@@ -0,0 +1,101 @@
+package org.fairsharing.owl2neo;
+
+import org.junit.*;
+
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StoreGenerationsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File store;
+    private StoreGenerations storeGenerations;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new File(folder.getRoot(), "test.db");
+        storeGenerations = new StoreGenerations(store);
+    }
+
+    private File build(String marker) throws Exception {
+        File generation = storeGenerations.createGeneration();
+        Assert.assertTrue(new File(generation, marker).createNewFile());
+        return generation;
+    }
+
+    @Test
+    public void activateSwitchesLink() throws Exception {
+        File first = build("first");
+        storeGenerations.activate(first);
+        Assert.assertTrue(Files.isSymbolicLink(store.toPath()));
+        Assert.assertTrue(new File(store, "first").exists());
+
+        File second = build("second");
+        Assert.assertTrue(new File(store, "first").exists());
+        storeGenerations.activate(second);
+        Assert.assertTrue(new File(store, "second").exists());
+        Assert.assertEquals(second.getCanonicalFile(), StoreGenerations.resolve(store.getPath()).getCanonicalFile());
+    }
+
+    @Test
+    public void activateMovesExistingStore() throws Exception {
+        Assert.assertTrue(store.mkdirs());
+        Assert.assertTrue(new File(store, "legacy").createNewFile());
+        storeGenerations.activate(build("new"));
+        List<File> generations = storeGenerations.getGenerations();
+        Assert.assertEquals(2, generations.size());
+        Assert.assertTrue(new File(generations.get(0), "legacy").exists());
+        Assert.assertTrue(new File(store, "new").exists());
+    }
+
+    @Test
+    public void activateMovesStoreRebuiltWithoutGenerations() throws Exception {
+        File first = build("first");
+        storeGenerations.activate(first);
+        // a run without generations replaces the link with a plain directory, twice
+        for (String marker : new String[] { "plain1", "plain2" }) {
+            Assert.assertTrue(store.delete());
+            Assert.assertTrue(store.mkdirs());
+            Assert.assertTrue(new File(store, marker).createNewFile());
+            storeGenerations.activate(build("after-" + marker));
+        }
+
+        List<File> generations = storeGenerations.getGenerations();
+        Assert.assertEquals(5, generations.size());
+        Assert.assertTrue(new File(store, "after-plain2").exists());
+        // the plain store is the generation right before the one that replaced it
+        Assert.assertTrue(new File(generations.get(3), "plain2").exists());
+        Assert.assertTrue(new File(storeGenerations.rollback(), "plain2").exists());
+        Assert.assertTrue(new File(store, "plain2").exists());
+    }
+
+    @Test
+    public void rollbackAndPrune() throws Exception {
+        File first = build("first");
+        storeGenerations.activate(first);
+        File second = build("second");
+        storeGenerations.activate(second);
+        File third = build("third");
+        storeGenerations.activate(third);
+
+        Assert.assertEquals(second, storeGenerations.rollback());
+        Assert.assertTrue(new File(store, "second").exists());
+
+        Assert.assertEquals(1, storeGenerations.prune(2).size());
+        Assert.assertFalse(first.exists());
+        Assert.assertTrue(second.exists());
+        Assert.assertTrue(third.exists());
+
+        // the active generation survives even when it is the oldest
+        storeGenerations.prune(1);
+        Assert.assertTrue(second.exists());
+    }
+
+}
@@ -0,0 +1,111 @@
+package org.fairsharing.owl2neo;
+
+import org.junit.*;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class StreamingDocumentSourceTest {
+
+    @Rule
+    public ResourceFile file = new ResourceFile("/DRAO-inferred.owl");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private int expectedAxiomCount;
+
+    @Before
+    public void setUp() throws Exception {
+        expectedAxiomCount = OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(file.getFile()).getAxiomCount();
+    }
+
+    private File compress(String extension) throws Exception {
+        File compressed = new File(folder.getRoot(), "DRAO-inferred.owl" + extension);
+        try (OutputStream out = extension.equals(".gz") ? new GZIPOutputStream(new FileOutputStream(compressed))
+                : new ZstdOutputStream(new FileOutputStream(compressed))) {
+            FileUtils.copyFile(file.getFile(), out);
+        }
+        return compressed;
+    }
+
+    private OWLOntology load(StreamingDocumentSource source) throws Exception {
+        return OWLManager.createOWLOntologyManager().loadOntologyFromOntologyDocument(source);
+    }
+
+    @Test
+    public void loadPlainFile() throws Exception {
+        StreamingDocumentSource source = new StreamingDocumentSource(file.getFile().getPath());
+        Assert.assertEquals(expectedAxiomCount, load(source).getAxiomCount());
+        Assert.assertTrue(source.getBytesRead() >= file.getFile().length());
+        Assert.assertFalse(source.isCompressed());
+        Assert.assertEquals(source.getBytesRead(), source.getUncompressedBytesRead());
+    }
+
+    @Test
+    public void loadCompressedFiles() throws Exception {
+        for (String extension : new String[] { ".gz", ".zst" }) {
+            File compressed = compress(extension);
+            StreamingDocumentSource source = new StreamingDocumentSource(compressed.getPath(), 4096);
+            Assert.assertEquals(expectedAxiomCount, load(source).getAxiomCount());
+            Assert.assertTrue(source.getBytesRead() >= compressed.length());
+            Assert.assertTrue(source.getUncompressedBytesRead() >= file.getFile().length());
+        }
+    }
+
+    @Test
+    public void loadFromURL() throws Exception {
+        String url = compress(".gz").toURI().toString();
+        Assert.assertTrue(StreamingDocumentSource.isRemote(url));
+        Assert.assertFalse(StreamingDocumentSource.isRemote(file.getFile().getPath()));
+        Assert.assertEquals(expectedAxiomCount, load(new StreamingDocumentSource(url)).getAxiomCount());
+    }
+
+    @Test
+    public void loadFromHttpFollowingRedirects() throws Exception {
+        byte[] document = FileUtils.readFileToByteArray(compress(".gz"));
+        List<String> accepts = Collections.synchronizedList(new ArrayList<String>());
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/old.owl.gz", exchange -> {
+            exchange.getResponseHeaders().add("Location", "/new.owl.gz");
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_MOVED_PERM, -1);
+            exchange.close();
+        });
+        server.createContext("/new.owl.gz", exchange -> {
+            accepts.add(exchange.getRequestHeaders().getFirst("Accept"));
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, document.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(document);
+            }
+        });
+        server.start();
+        try {
+            String url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/old.owl.gz";
+            StreamingDocumentSource source = new StreamingDocumentSource(url);
+            Assert.assertEquals(expectedAxiomCount, load(source).getAxiomCount());
+            Assert.assertFalse(accepts.isEmpty());
+            Assert.assertEquals(StreamingDocumentSource.ACCEPT, accepts.get(0));
+        }
+        finally {
+            server.stop(0);
+        }
+    }
+
+}
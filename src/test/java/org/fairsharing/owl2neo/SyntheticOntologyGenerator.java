@@ -0,0 +1,198 @@
+package org.fairsharing.owl2neo;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.formats.RDFXMLDocumentFormat;
+import org.semanticweb.owlapi.model.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic ontologies shaped like the FAIRsharing ones (labels, synonyms, alternative terms
+ * and inSubset annotations) so that the loader can be exercised on inputs much larger than the fixtures.
+ * Classes are laid out breadth first: every class gets up to <code>branchingFactor</code> children until
+ * <code>depth</code> levels exist, after which the deepest parent level keeps taking children round-robin.
+ * With a restriction density set, classes also get a <code>part of some</code> restriction to a random earlier
+ * class, so the axiom load mode has restriction edges to write.
+ */
+public class SyntheticOntologyGenerator {
+
+    public static final String BASE_IRI = "http://www.fairsharing.org/ontology/synthetic";
+
+    private static final String CLASS_PREFIX = BASE_IRI + "#SYN_";
+    private static final String IN_SUBSET_IRI = "http://www.geneontology.org/formats/oboInOwl#inSubset";
+    private static final String OBO_ALTERNATIVE_TERM_IRI = "http://purl.obolibrary.org/obo/IAO_0000118";
+    private static final String FAIRSHARING_ALTERNATIVE_TERM_IRI = "http://www.fairsharing.org/ontology/DRAO_0000001";
+    private static final String OIO_HAS_EXACT_SYNONYM = "http://www.geneontology.org/formats/oboInOwl#hasExactSynonym";
+    private static final String OIO_HAS_RELATED_SYNONYM = "http://www.geneontology.org/formats/oboInOwl#hasRelatedSynonym";
+    private static final String PART_OF_IRI = "http://purl.obolibrary.org/obo/BFO_0000050";
+
+    private final int numberOfClasses;
+    private final int depth;
+    private final int branchingFactor;
+    private int synonymsPerClass = 0;
+    private int alternativeTermsPerClass = 0;
+    private double inSubsetDensity = 0.0;
+    private double restrictionDensity = 0.0;
+    private long seed = 42L;
+
+    public SyntheticOntologyGenerator(int numberOfClasses, int depth, int branchingFactor) {
+        if (numberOfClasses <= 0 || depth <= 0 || branchingFactor <= 0) {
+            throw new IllegalArgumentException("Number of classes, depth and branching factor must be positive");
+        }
+        this.numberOfClasses = numberOfClasses;
+        this.depth = depth;
+        this.branchingFactor = branchingFactor;
+    }
+
+    public int getNumberOfClasses() {
+        return numberOfClasses;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getBranchingFactor() {
+        return branchingFactor;
+    }
+
+    public int getSynonymsPerClass() {
+        return synonymsPerClass;
+    }
+
+    public void setSynonymsPerClass(int synonymsPerClass) {
+        this.synonymsPerClass = synonymsPerClass;
+    }
+
+    public int getAlternativeTermsPerClass() {
+        return alternativeTermsPerClass;
+    }
+
+    public void setAlternativeTermsPerClass(int alternativeTermsPerClass) {
+        this.alternativeTermsPerClass = alternativeTermsPerClass;
+    }
+
+    public double getInSubsetDensity() {
+        return inSubsetDensity;
+    }
+
+    public void setInSubsetDensity(double inSubsetDensity) {
+        if (inSubsetDensity < 0.0 || inSubsetDensity > 1.0) {
+            throw new IllegalArgumentException("inSubset density must be between 0 and 1: " + inSubsetDensity);
+        }
+        this.inSubsetDensity = inSubsetDensity;
+    }
+
+    public double getRestrictionDensity() {
+        return restrictionDensity;
+    }
+
+    public void setRestrictionDensity(double restrictionDensity) {
+        if (restrictionDensity < 0.0 || restrictionDensity > 1.0) {
+            throw new IllegalArgumentException("Restriction density must be between 0 and 1: " + restrictionDensity);
+        }
+        this.restrictionDensity = restrictionDensity;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public OWLOntology generate() throws OWLOntologyCreationException {
+        return generate(OWLManager.createOWLOntologyManager());
+    }
+
+    public OWLOntology generate(OWLOntologyManager manager) throws OWLOntologyCreationException {
+        OWLDataFactory factory = manager.getOWLDataFactory();
+        OWLOntology ontology = manager.createOntology(IRI.create(BASE_IRI));
+        Random random = new Random(seed);
+
+        OWLAnnotationProperty inSubset = factory.getOWLAnnotationProperty(IRI.create(IN_SUBSET_IRI));
+        OWLAnnotationProperty[] synonyms = {
+                factory.getOWLAnnotationProperty(IRI.create(OIO_HAS_EXACT_SYNONYM)),
+                factory.getOWLAnnotationProperty(IRI.create(OIO_HAS_RELATED_SYNONYM))
+        };
+        OWLAnnotationProperty[] alternativeTerms = {
+                factory.getOWLAnnotationProperty(IRI.create(FAIRSHARING_ALTERNATIVE_TERM_IRI)),
+                factory.getOWLAnnotationProperty(IRI.create(OBO_ALTERNATIVE_TERM_IRI))
+        };
+
+        OWLObjectProperty partOf = factory.getOWLObjectProperty(IRI.create(PART_OF_IRI));
+
+        List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+        changes.add(new AddAxiom(ontology, factory.getOWLDeclarationAxiom(inSubset)));
+        if (restrictionDensity > 0.0) {
+            changes.add(new AddAxiom(ontology, factory.getOWLDeclarationAxiom(partOf)));
+            changes.add(new AddAxiom(ontology, factory.getOWLAnnotationAssertionAxiom(factory.getRDFSLabel(),
+                    partOf.getIRI(), factory.getOWLLiteral("part of"))));
+        }
+        for (OWLAnnotationProperty property : synonyms) {
+            changes.add(new AddAxiom(ontology, factory.getOWLDeclarationAxiom(property)));
+        }
+        for (OWLAnnotationProperty property : alternativeTerms) {
+            changes.add(new AddAxiom(ontology, factory.getOWLDeclarationAxiom(property)));
+        }
+
+        int[] levels = new int[numberOfClasses];
+        int[] levelStarts = new int[depth];
+        int parent = 0, children = 0;
+        for (int i = 0; i < numberOfClasses; i++) {
+            OWLClass c = getOWLClass(factory, i);
+            changes.add(new AddAxiom(ontology, factory.getOWLDeclarationAxiom(c)));
+            changes.add(new AddAxiom(ontology, annotation(factory, factory.getRDFSLabel(), c, "synthetic class " + i)));
+
+            if (i >= branchingFactor && depth > 1) {
+                if (levels[parent] >= depth - 1) {
+                    // the tree is full: keep adding children round-robin to the deepest parent level
+                    parent = levelStarts[depth - 2];
+                    children = 0;
+                }
+                levels[i] = levels[parent] + 1;
+                if (levels[i] > levels[i - 1]) {
+                    levelStarts[levels[i]] = i;
+                }
+                changes.add(new AddAxiom(ontology, factory.getOWLSubClassOfAxiom(c, getOWLClass(factory, parent))));
+                if (++children == branchingFactor) {
+                    parent++;
+                    children = 0;
+                }
+            }
+
+            for (int s = 0; s < synonymsPerClass; s++) {
+                changes.add(new AddAxiom(ontology, annotation(factory, synonyms[s % synonyms.length], c, "synonym " + s + " of " + i)));
+            }
+            for (int a = 0; a < alternativeTermsPerClass; a++) {
+                changes.add(new AddAxiom(ontology, annotation(factory, alternativeTerms[a % alternativeTerms.length], c, "alternative term " + a + " of " + i)));
+            }
+            if (random.nextDouble() < inSubsetDensity) {
+                changes.add(new AddAxiom(ontology, annotation(factory, inSubset, c, Owl2Neo4jLoader.IN_SUBJECT_VALUE_FAIRSHARING)));
+            }
+            if (i > 0 && restrictionDensity > 0.0 && random.nextDouble() < restrictionDensity) {
+                OWLClass whole = getOWLClass(factory, random.nextInt(i));
+                changes.add(new AddAxiom(ontology, factory.getOWLSubClassOfAxiom(c, factory.getOWLObjectSomeValuesFrom(partOf, whole))));
+            }
+        }
+        manager.applyChanges(changes);
+        return ontology;
+    }
+
+    public void writeTo(OWLOntology ontology, File file) throws OWLOntologyStorageException {
+        ontology.getOWLOntologyManager().saveOntology(ontology, new RDFXMLDocumentFormat(), IRI.create(file.toURI()));
+    }
+
+    private static OWLClass getOWLClass(OWLDataFactory factory, int i) {
+        return factory.getOWLClass(IRI.create(CLASS_PREFIX + i));
+    }
+
+    private static OWLAnnotationAssertionAxiom annotation(OWLDataFactory factory, OWLAnnotationProperty property, OWLClass c, String value) {
+        return factory.getOWLAnnotationAssertionAxiom(property, c.getIRI(), factory.getOWLLiteral(value));
+    }
+
+}
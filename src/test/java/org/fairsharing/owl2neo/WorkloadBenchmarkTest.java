@@ -0,0 +1,131 @@
+package org.fairsharing.owl2neo;
+
+import org.junit.*;
+
+import org.apache.commons.io.FileUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class WorkloadBenchmarkTest {
+
+    public static final String TEST_GRAPH_DB_PATH = "var/benchmark-test.db";
+
+    private GraphDatabaseService graphDb;
+
+    @Before
+    public void setUp() throws Exception {
+        graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(new File(TEST_GRAPH_DB_PATH));
+        try (Transaction tx = graphDb.beginTx()) {
+            Node parent = graphDb.createNode(Label.label("DOMAIN"));
+            parent.setProperty("iri", "http://www.fairsharing.org/ontology/test#Parent");
+            parent.setProperty("synonyms", new String[] { "progenitor" });
+            Node child = graphDb.createNode(Label.label("DOMAIN"));
+            child.setProperty("iri", "http://www.fairsharing.org/ontology/test#Child");
+            child.setProperty("synonyms", new String[0]);
+            child.createRelationshipTo(parent, RelationshipType.withName(Owl2Neo4jLoader.PART_OF));
+            tx.success();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        graphDb.shutdown();
+        try {
+            FileUtils.deleteDirectory(new File(TEST_GRAPH_DB_PATH));
+        }
+        catch (IOException err) {
+            System.err.println("Could not delete directory: " + TEST_GRAPH_DB_PATH);
+        }
+    }
+
+    @Test
+    public void parseWorkload() throws Exception {
+        List<WorkloadBenchmark.WorkloadQuery> queries = WorkloadBenchmark.parseWorkload(new BufferedReader(new StringReader(
+                "# comment\n\nlookup | 3 | MATCH (n {iri: $iri}) WHERE $synonyms IN n.synonyms RETURN n\n")));
+        Assert.assertEquals(1, queries.size());
+        Assert.assertEquals("lookup", queries.get(0).getName());
+        Assert.assertEquals(3, queries.get(0).getWeight());
+        Assert.assertArrayEquals(new String[] { "iri", "synonyms" }, queries.get(0).getParameters().toArray());
+        Assert.assertEquals(4, WorkloadBenchmark.loadWorkload(null).size());
+    }
+
+    @Test
+    public void percentile() throws Exception {
+        long[] sorted = new long[100];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i + 1;
+        }
+        Assert.assertEquals(50, WorkloadBenchmark.LatencyStats.percentile(sorted, 50));
+        Assert.assertEquals(99, WorkloadBenchmark.LatencyStats.percentile(sorted, 99));
+        Assert.assertEquals(1, WorkloadBenchmark.LatencyStats.percentile(new long[] { 1 }, 95));
+    }
+
+    @Test
+    public void runColdAndWarm() throws Exception {
+        WorkloadBenchmark benchmark = new WorkloadBenchmark(graphDb, WorkloadBenchmark.loadWorkload(null));
+        benchmark.setThreads(2);
+        benchmark.setOperations(200);
+        List<WorkloadBenchmark.Report> reports = benchmark.runColdAndWarm();
+        Assert.assertEquals(2, reports.size());
+        for (WorkloadBenchmark.Report report : reports) {
+            Assert.assertEquals(0, report.getErrors());
+            Assert.assertEquals(200, report.getTotal().getCount());
+            Assert.assertTrue(report.getThroughput() > 0);
+            Assert.assertTrue(report.getTotal().getP50() <= report.getTotal().getP99());
+        }
+    }
+
+    @Test
+    public void runWithParametersSampledBeforeReopening() throws Exception {
+        List<WorkloadBenchmark.WorkloadQuery> workload = WorkloadBenchmark.loadWorkload(null);
+        Map<String, List<Object>> parameterPools = new WorkloadBenchmark(graphDb, workload).sampleParameters();
+        Assert.assertEquals(2, parameterPools.get("iri").size());
+        Assert.assertEquals(1, parameterPools.get("synonyms").size());
+
+        graphDb.shutdown();
+        graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(new File(TEST_GRAPH_DB_PATH));
+        WorkloadBenchmark benchmark = new WorkloadBenchmark(graphDb, workload, parameterPools);
+        benchmark.setThreads(2);
+        benchmark.setOperations(100);
+        WorkloadBenchmark.Report report = benchmark.run("cold");
+        Assert.assertEquals(0, report.getErrors());
+        Assert.assertEquals(100, report.getTotal().getCount());
+    }
+
+    @Test
+    public void defaultWorkloadUsesLabelIndex() throws Exception {
+        graphDb.execute("CREATE CONSTRAINT ON (domain:DOMAIN) ASSERT domain.iri IS UNIQUE");
+        try (Transaction tx = graphDb.beginTx()) {
+            Node other = graphDb.createNode(Label.label("DISCIPLINE"));
+            other.setProperty("iri", "http://www.fairsharing.org/ontology/test#Other");
+            tx.success();
+        }
+        for (WorkloadBenchmark.WorkloadQuery query : WorkloadBenchmark.loadWorkload(null)) {
+            if (query.getParameters().contains("iri")) {
+                String cypher = query.getCypher().replace(WorkloadBenchmark.LABEL_PLACEHOLDER, WorkloadBenchmark.DEFAULT_LABEL);
+                try (Transaction tx = graphDb.beginTx()) {
+                    String plan = graphDb.execute("EXPLAIN " + cypher).getExecutionPlanDescription().toString();
+                    Assert.assertTrue(query.getName() + ": " + plan, plan.contains("NodeUniqueIndexSeek"));
+                    tx.success();
+                }
+            }
+        }
+        // parameters only come from nodes with the benchmark label
+        Map<String, List<Object>> parameterPools = new WorkloadBenchmark(graphDb, WorkloadBenchmark.loadWorkload(null)).sampleParameters();
+        Assert.assertEquals(2, parameterPools.get("iri").size());
+    }
+
+}